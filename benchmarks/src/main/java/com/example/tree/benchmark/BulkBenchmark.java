@@ -0,0 +1,97 @@
+package com.example.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// whole-set operations. clear and removeIf empty the set, so it is filled again before every invocation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BulkBenchmark {
+
+    @Param({"AVL_TREE", "TREE_SET"})
+    private Implementation implementation;
+
+    @Param({"RANDOM", "ASCENDING", "DESCENDING", "ZIPFIAN"})
+    private Distribution distribution;
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    private Integer[] population;
+
+    private SetAdapter set;
+
+    private SetAdapter copy;
+
+    private SetAdapter mutable;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        population = distribution.population(size, 1);
+        set = fill(implementation.create());
+        copy = fill(implementation.create());
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        if (mutable == null || mutable.size() != size) {
+            mutable = fill(implementation.create());
+        }
+    }
+
+    @Benchmark
+    public SetAdapter clear() {
+        mutable.clear();
+        return mutable;
+    }
+
+    @Benchmark
+    public boolean removeIf(RemoveIfState state) {
+        int percent = state.removePercent;
+        // population values are even, so value / 2 spreads the removed ones evenly over the set
+        return mutable.removeIf(value -> {
+            return (value >>> 1) % 100 < percent;
+        });
+    }
+
+    @Benchmark
+    public boolean equalTo() {
+        return set.equals(copy);
+    }
+
+    @Benchmark
+    public int hash() {
+        return set.hashCode();
+    }
+
+    private SetAdapter fill(SetAdapter set) {
+        for (Integer key : population) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @State(Scope.Thread)
+    public static class RemoveIfState {
+
+        // share of the values removeIf removes, in percent
+        @Param({"5", "40"})
+        private int removePercent;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// MixedBenchmark on one set shared by several threads, each walking its own slice of the accesses;
+// run with -t to change the thread count
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(4)
+public class ConcurrentBenchmark {
+
+    private static final int ACCESSES = 1 << 20;
+
+    @Param({"CONCURRENT_AVL_TREE", "CONCURRENT_SKIP_LIST_SET"})
+    private Implementation implementation;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    private Distribution distribution;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"100", "90", "50"})
+    private int readPercent;
+
+    private SetAdapter set;
+
+    private Integer[] keys;
+
+    private boolean[] reads;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        @Setup
+        public void setUp(ThreadParams params) {
+            index = params.getThreadIndex() * (ACCESSES / params.getThreadCount());
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        set = implementation.create();
+        for (Integer key : distribution.population(size, 1)) {
+            set.add(key);
+        }
+        keys = distribution.accesses(size, ACCESSES, 2);
+        reads = new boolean[ACCESSES];
+        Random random = new Random(3);
+        for (int i = 0; i < ACCESSES; i++) {
+            reads[i] = random.nextInt(100) < readPercent;
+        }
+    }
+
+    @Benchmark
+    public boolean lookup(Cursor cursor) {
+        int i = cursor.index++ & (ACCESSES - 1);
+        return set.contains(keys[i]);
+    }
+
+    @Benchmark
+    public boolean mixed(Cursor cursor) {
+        int i = cursor.index++ & (ACCESSES - 1);
+        Integer key = keys[i];
+        if (reads[i]) {
+            return set.contains(key);
+        }
+        return set.add(key) || set.remove(key);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.tree.benchmark;
+
+import java.util.Random;
+
+// The population holds the even keys of [0, 2 * size), inserted in the order of the distribution.
+// Accesses cover the whole range, so about half of them hit a value of the population.
+public enum Distribution {
+    RANDOM,
+    ASCENDING,
+    DESCENDING,
+    ZIPFIAN;
+
+    private static final double ZIPF_THETA = 0.99;
+
+    Integer[] population(int size, long seed) {
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = this == DESCENDING ? 2 * (size - 1 - i) : 2 * i;
+        }
+        if (this == RANDOM || this == ZIPFIAN) {
+            shuffle(keys, new Random(seed));
+        }
+        return keys;
+    }
+
+    Integer[] accesses(int size, int count, long seed) {
+        Random random = new Random(seed);
+        int range = 2 * size;
+        Integer[] keys = new Integer[count];
+        switch (this) {
+            case RANDOM:
+                for (int i = 0; i < count; i++) {
+                    keys[i] = random.nextInt(range);
+                }
+                break;
+            case ASCENDING:
+                for (int i = 0; i < count; i++) {
+                    keys[i] = i % range;
+                }
+                break;
+            case DESCENDING:
+                for (int i = 0; i < count; i++) {
+                    keys[i] = range - 1 - i % range;
+                }
+                break;
+            default:
+                Zipf zipf = new Zipf(range, ZIPF_THETA);
+                for (int i = 0; i < count; i++) {
+                    // scatters the popular ranks over the key range
+                    keys[i] = (int) Math.floorMod(zipf.next(random) * 0x9E3779B97F4A7C15L, (long) range);
+                }
+        }
+        return keys;
+    }
+
+    private static void shuffle(Integer[] keys, Random random) {
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+    }
+
+    // Gray et al., "Quickly generating billion-record synthetic databases", ranks start at zero
+    private static final class Zipf {
+
+        private final long n;
+
+        private final double theta;
+
+        private final double zetan;
+
+        private final double alpha;
+
+        private final double eta;
+
+        private Zipf(long n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            double zetan = 0;
+            for (long i = 1; i <= n; i++) {
+                zetan += 1 / Math.pow(i, theta);
+            }
+            this.zetan = zetan;
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        private long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.tree.benchmark;
+
+import com.example.tree.core.AvlTree;
+import com.example.tree.core.BTree;
+import com.example.tree.core.ConcurrentAvlTree;
+import com.example.tree.core.Tree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+public enum Implementation {
+    AVL_TREE {
+        @Override
+        SetAdapter create() {
+            return new TreeAdapter(new AvlTree<>(Comparator.naturalOrder()));
+        }
+    },
+    B_TREE {
+        @Override
+        SetAdapter create() {
+            return new TreeAdapter(new BTree<>(Comparator.naturalOrder()));
+        }
+    },
+    TREE_SET {
+        @Override
+        SetAdapter create() {
+            return new NavigableSetAdapter(new TreeSet<>());
+        }
+    },
+    // the thread-safe ones, for ConcurrentBenchmark
+    CONCURRENT_AVL_TREE {
+        @Override
+        SetAdapter create() {
+            return new TreeAdapter(new ConcurrentAvlTree<>(Comparator.naturalOrder()));
+        }
+    },
+    CONCURRENT_SKIP_LIST_SET {
+        @Override
+        SetAdapter create() {
+            return new NavigableSetAdapter(new ConcurrentSkipListSet<>());
+        }
+    };
+
+    abstract SetAdapter create();
+
+    private static final class TreeAdapter implements SetAdapter {
+
+        private final Tree<Integer> tree;
+
+        private TreeAdapter(Tree<Integer> tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public boolean add(Integer value) {
+            return tree.add(value);
+        }
+
+        @Override
+        public boolean remove(Integer value) {
+            return tree.remove(value);
+        }
+
+        @Override
+        public boolean contains(Integer value) {
+            return tree.contains(value);
+        }
+
+        @Override
+        public void clear() {
+            tree.clear();
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Integer> filter) {
+            return tree.removeByValueIf(filter);
+        }
+
+        @Override
+        public long ascendingSum() {
+            long sum = 0;
+            for (Tree.Node<Integer> node = tree.first(); node != null; node = tree.next(node)) {
+                sum += node.getValue();
+            }
+            return sum;
+        }
+
+        @Override
+        public long descendingSum() {
+            long sum = 0;
+            for (Tree.Node<Integer> node = tree.last(); node != null; node = tree.prev(node)) {
+                sum += node.getValue();
+            }
+            return sum;
+        }
+
+        @Override
+        public int size() {
+            return tree.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TreeAdapter that = (TreeAdapter) o;
+            return tree.equals(that.tree);
+        }
+
+        @Override
+        public int hashCode() {
+            return tree.hashCode();
+        }
+    }
+
+    private static final class NavigableSetAdapter implements SetAdapter {
+
+        private final NavigableSet<Integer> set;
+
+        private NavigableSetAdapter(NavigableSet<Integer> set) {
+            this.set = set;
+        }
+
+        @Override
+        public boolean add(Integer value) {
+            return set.add(value);
+        }
+
+        @Override
+        public boolean remove(Integer value) {
+            return set.remove(value);
+        }
+
+        @Override
+        public boolean contains(Integer value) {
+            return set.contains(value);
+        }
+
+        @Override
+        public void clear() {
+            set.clear();
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Integer> filter) {
+            return set.removeIf(filter);
+        }
+
+        @Override
+        public long ascendingSum() {
+            long sum = 0;
+            for (Iterator<Integer> iterator = set.iterator(); iterator.hasNext(); ) {
+                sum += iterator.next();
+            }
+            return sum;
+        }
+
+        @Override
+        public long descendingSum() {
+            long sum = 0;
+            for (Iterator<Integer> iterator = set.descendingIterator(); iterator.hasNext(); ) {
+                sum += iterator.next();
+            }
+            return sum;
+        }
+
+        @Override
+        public int size() {
+            return set.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            NavigableSetAdapter that = (NavigableSetAdapter) o;
+            return Objects.equals(set, that.set);
+        }
+
+        @Override
+        public int hashCode() {
+            return set.hashCode();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// full in-order walks, next() and prev() for a Tree and the iterators for the TreeSet
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IterationBenchmark {
+
+    @Param({"AVL_TREE", "TREE_SET"})
+    private Implementation implementation;
+
+    @Param({"RANDOM", "ASCENDING", "DESCENDING", "ZIPFIAN"})
+    private Distribution distribution;
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    private SetAdapter set;
+
+    @Setup
+    public void setUp() {
+        set = implementation.create();
+        for (Integer key : distribution.population(size, 1)) {
+            set.add(key);
+        }
+    }
+
+    @Benchmark
+    public long ascending() {
+        return set.ascendingSum();
+    }
+
+    @Benchmark
+    public long descending() {
+        return set.descendingSum();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.tree.benchmark;
+
+import com.example.tree.core.AvlTree;
+import com.example.tree.core.CompactAvlTree;
+import com.example.tree.core.Tree;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+// Reports the heap taken per element by each set, the boxed values excluded. Run it with a fixed heap, for example
+// java -Xms4g -Xmx4g -XX:+UseParallelGC -cp benchmarks/target/benchmarks.jar \
+//         com.example.tree.benchmark.MemoryFootprint 1000000
+public class MemoryFootprint {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        // the first round only warms up, its numbers are skewed by what the JVM frees after startup
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            report(print, "AvlTree", size, () -> fill(new AvlTree<>(Comparator.naturalOrder()), values));
+            report(print, "CompactAvlTree", size, () -> fill(new CompactAvlTree<>(Comparator.naturalOrder()), values));
+            report(print, "TreeSet", size, () -> {
+                TreeSet<Integer> set = new TreeSet<>();
+                for (Integer value : values) {
+                    set.add(value);
+                }
+                return set;
+            });
+        }
+    }
+
+    private static Tree<Integer> fill(Tree<Integer> tree, Integer[] values) {
+        for (Integer value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static void report(boolean print, String name, int size, Supplier<Object> factory) {
+        long before = usedHeap();
+        Object set = factory.get();
+        long after = usedHeap();
+        if (print) {
+            System.out.printf("%-16s %,d elements: %.1f bytes per element%n", name, size,
+                    (double) (after - before) / size);
+        }
+        Reference.reachabilityFence(set);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
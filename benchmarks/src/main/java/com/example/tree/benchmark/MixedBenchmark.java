@@ -0,0 +1,78 @@
+package com.example.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// single operations on a populated set: a read is contains, a write toggles the key with add or remove
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MixedBenchmark {
+
+    private static final int ACCESSES = 1 << 20;
+
+    @Param({"AVL_TREE", "B_TREE", "TREE_SET"})
+    private Implementation implementation;
+
+    @Param({"RANDOM", "ASCENDING", "DESCENDING", "ZIPFIAN"})
+    private Distribution distribution;
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"100", "90", "50", "0"})
+    private int readPercent;
+
+    private SetAdapter set;
+
+    private Integer[] keys;
+
+    private boolean[] reads;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        set = implementation.create();
+        for (Integer key : distribution.population(size, 1)) {
+            set.add(key);
+        }
+        keys = distribution.accesses(size, ACCESSES, 2);
+        reads = new boolean[ACCESSES];
+        Random random = new Random(3);
+        for (int i = 0; i < ACCESSES; i++) {
+            reads[i] = random.nextInt(100) < readPercent;
+        }
+    }
+
+    @Benchmark
+    public boolean lookup() {
+        int i = index++ & (ACCESSES - 1);
+        return set.contains(keys[i]);
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        int i = index++ & (ACCESSES - 1);
+        Integer key = keys[i];
+        if (reads[i]) {
+            return set.contains(key);
+        }
+        return set.add(key) || set.remove(key);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.tree.benchmark;
+
+import java.util.function.Predicate;
+
+// the operations measured by the benchmarks, implemented over a Tree and over the TreeSet baseline
+interface SetAdapter {
+
+    boolean add(Integer value);
+
+    boolean remove(Integer value);
+
+    boolean contains(Integer value);
+
+    void clear();
+
+    boolean removeIf(Predicate<? super Integer> filter);
+
+    // walks the values in ascending order, next() for a Tree
+    long ascendingSum();
+
+    // walks the values in descending order, prev() for a Tree
+    long descendingSum();
+
+    int size();
+}
@@ -1,6 +1,6 @@
 package com.example.tree.controller;
 
-import com.example.tree.core.AvlTree;
+import com.example.tree.core.AvlTreeMap;
 import com.example.tree.core.Tree;
 import com.example.tree.core.Trees;
 import com.example.tree.exception.LoadingException;
@@ -23,9 +23,7 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import net.synedra.validatorfx.Validator;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Pattern;
 
@@ -81,9 +79,8 @@ public class MainController implements Controller {
     @FXML
     private ColorPicker linksColorPicker;
 
-    private Tree<Integer> tree;
-
-    private Map<Integer, Point> pointMap;
+    // every node carries its position on the canvas
+    private AvlTreeMap<Integer, Point> tree;
 
     private Integer selectedNodeValue;
 
@@ -100,10 +97,9 @@ public class MainController implements Controller {
 
     @FXML
     private void initialize() {
-        tree = new AvlTree<>(Integer::compareTo);
-        pointMap = new HashMap<>();
+        tree = new AvlTreeMap<>(Integer::compareTo);
         for (int i = 0; i < 10; i++) {
-            tree.add(i);
+            tree.put(i, new Point());
         }
 
         nodeSize = new Size(50, 50);
@@ -155,8 +151,7 @@ public class MainController implements Controller {
 
     private void add() throws ValidationException {
         Integer value = getInt(addTextField);
-        if (tree.add(value)) {
-            pointMap.put(value, centerPoint());
+        if (tree.putIfAbsent(value, centerPoint()) == null) {
             selectedNodeValue = value;
             format();
             repaint();
@@ -181,7 +176,6 @@ public class MainController implements Controller {
     private void remove() throws ValidationException {
         Integer value = getInt(removeTextField);
         if (tree.remove(value)) {
-            pointMap.remove(value);
             format();
             repaint();
         }
@@ -201,7 +195,6 @@ public class MainController implements Controller {
 
     private void clear() {
         tree.clear();
-        pointMap.clear();
         selectedNodeValue = null;
         repaint();
     }
@@ -215,8 +208,7 @@ public class MainController implements Controller {
             int posY = level * spaceY;
             double posXFactor = 1 + Math.pow(2, level);
             for (int index = 0, s = nodes.size(); index < s; index++) {
-                Tree.Node<Integer> node = nodes.get(index);
-                Point pos = pointMap.computeIfAbsent(node.getValue(), v -> new Point());
+                Point pos = tree.node(nodes.get(index)).getPayload();
                 int posX = (int) ((index + 1) * (screenWidth / posXFactor));
                 pos.setX(posX);
                 pos.setY(posY);
@@ -287,8 +279,8 @@ public class MainController implements Controller {
         int nodeHeight = nodeSize.getHeight();
         int mouseX = (int) mouseEvent.getX();
         int mouseY = (int) mouseEvent.getY();
-        for (Map.Entry<Integer, Point> entry : pointMap.entrySet()) {
-            Point pos = entry.getValue();
+        for (AvlTreeMap.Node<Integer, Point> node = tree.first(); node != null; node = tree.next(node)) {
+            Point pos = node.getPayload();
             int posX = pos.getX();
             int posY = pos.getY();
             if (Geometry.containsPoint(posX, posY, posX + nodeWidth, posY + nodeHeight, mouseX, mouseY)) {
@@ -296,7 +288,7 @@ public class MainController implements Controller {
                 delta.setX(posX - mouseX);
                 delta.setY(posY - mouseY);
                 if (mouseEvent.isSecondaryButtonDown()) {
-                    Integer value = entry.getKey();
+                    Integer value = node.getValue();
                     selectedNodeValue = value;
                 }
                 break;
@@ -355,18 +347,19 @@ public class MainController implements Controller {
         int centerX = nodeWidth / 2;
         int centerY = nodeHeight / 2;
 
-        tree.forEach(node -> {
-            Point fromPos = pointMap.get(node.getValue());
+        tree.forEach(treeNode -> {
+            AvlTreeMap.Node<Integer, Point> node = tree.node(treeNode);
+            Point fromPos = node.getPayload();
             int x1 = fromPos.getX() + centerX;
             int y1 = fromPos.getY() + centerY;
             if (node.getLeft() != null) {
-                Point toPos = pointMap.get(node.getLeft().getValue());
+                Point toPos = node.getLeft().getPayload();
                 int x2 = toPos.getX() + centerX;
                 int y2 = toPos.getY() + centerY;
                 context.strokeLine(x1, y1, x2, y2);
             }
             if (node.getRight() != null) {
-                Point toPos = pointMap.get(node.getRight().getValue());
+                Point toPos = node.getRight().getPayload();
                 int x2 = toPos.getX() + centerX;
                 int y2 = toPos.getY() + centerY;
                 context.strokeLine(x1, y1, x2, y2);
@@ -378,8 +371,9 @@ public class MainController implements Controller {
         Color linksColor = linksColorPicker.getValue();
         double nodeOffsetX = nodeSize.getWidth() / 2.3;
         double nodeOffsetY = nodeSize.getHeight() / 2.0;
-        tree.forEach(node -> {
-            Point nodePos = pointMap.get(node.getValue());
+        tree.forEach(treeNode -> {
+            AvlTreeMap.Node<Integer, Point> node = tree.node(treeNode);
+            Point nodePos = node.getPayload();
             int x = nodePos.getX();
             int y = nodePos.getY();
             Color color = nodeColor;
@@ -0,0 +1,122 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+// AvlTree that keeps in every node the combination of the mapped values of its subtree, in order.
+// The combiner must be associative with the identity as neutral element, e.g. (0, Integer::sum) or
+// (Long.MIN_VALUE, Math::max), so that an aggregate over a range combines O(log n) cached subtree aggregates.
+public class AggregateAvlTree<T, A> extends AvlTree<T> {
+
+    private final Function<? super T, ? extends A> mapper;
+
+    private final A identity;
+
+    private final BinaryOperator<A> combiner;
+
+    public AggregateAvlTree(Comparator<? super T> comparator, Function<? super T, ? extends A> mapper,
+                            A identity, BinaryOperator<A> combiner) {
+        super(comparator);
+        this.mapper = Objects.requireNonNull(mapper);
+        this.identity = identity;
+        this.combiner = Objects.requireNonNull(combiner);
+    }
+
+    // the aggregate of all values
+    public A aggregate() {
+        return aggregate(node(root()));
+    }
+
+    public A aggregate(T lo, T hi) {
+        return aggregate(lo, true, hi, true);
+    }
+
+    public A aggregate(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        Comparator<? super T> comparator = comparator();
+        // the highest node inside the range, the values of the range are in its subtree
+        AggregateNode<T, A> node = node(root());
+        while (node != null) {
+            if (below(node.value, lo, loInclusive, comparator)) {
+                node = right(node);
+            } else if (above(node.value, hi, hiInclusive, comparator)) {
+                node = left(node);
+            } else {
+                break;
+            }
+        }
+        if (node == null) {
+            return identity;
+        }
+        // the values of the left subtree not below lo, followed by the values of the right subtree not above hi
+        A head = identity;
+        for (AggregateNode<T, A> n = left(node); n != null; ) {
+            if (below(n.value, lo, loInclusive, comparator)) {
+                n = right(n);
+            } else {
+                head = combiner.apply(combiner.apply(mapper.apply(n.value), aggregate(right(n))), head);
+                n = left(n);
+            }
+        }
+        A tail = identity;
+        for (AggregateNode<T, A> n = right(node); n != null; ) {
+            if (above(n.value, hi, hiInclusive, comparator)) {
+                n = left(n);
+            } else {
+                tail = combiner.apply(tail, combiner.apply(aggregate(left(n)), mapper.apply(n.value)));
+                n = right(n);
+            }
+        }
+        return combiner.apply(combiner.apply(head, mapper.apply(node.value)), tail);
+    }
+
+    @Override
+    AvlNode<T> newNode(T value, AvlNode<T> parent) {
+        return new AggregateNode<>(value, parent, mapper.apply(value));
+    }
+
+    @Override
+    void augment(AvlNode<T> node) {
+        AggregateNode<T, A> n = node(node);
+        n.aggregate = combiner.apply(combiner.apply(aggregate(left(n)), mapper.apply(n.value)), aggregate(right(n)));
+    }
+
+    private A aggregate(AggregateNode<T, A> node) {
+        return node != null ? node.aggregate : identity;
+    }
+
+    private static <T> boolean below(T value, T lo, boolean inclusive, Comparator<? super T> comparator) {
+        int cmp = comparator.compare(value, lo);
+        return cmp < 0 || (cmp == 0 && !inclusive);
+    }
+
+    private static <T> boolean above(T value, T hi, boolean inclusive, Comparator<? super T> comparator) {
+        int cmp = comparator.compare(value, hi);
+        return cmp > 0 || (cmp == 0 && !inclusive);
+    }
+
+    // every node of the tree comes from newNode
+    @SuppressWarnings("unchecked")
+    private AggregateNode<T, A> node(Node<T> node) {
+        return (AggregateNode<T, A>) node;
+    }
+
+    private AggregateNode<T, A> left(AggregateNode<T, A> node) {
+        return node(node.left);
+    }
+
+    private AggregateNode<T, A> right(AggregateNode<T, A> node) {
+        return node(node.right);
+    }
+
+    private static class AggregateNode<T, A> extends AvlNode<T> {
+
+        private A aggregate;
+
+        private AggregateNode(T value, AvlNode<T> parent, A aggregate) {
+            super(value, parent);
+            this.aggregate = aggregate;
+        }
+    }
+}
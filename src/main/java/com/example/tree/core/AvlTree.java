@@ -1,20 +1,76 @@
 package com.example.tree.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class AvlTree<T> implements Tree<T> {
 
+    // subtrees smaller than this are processed sequentially by the parallel operations
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
     private final Comparator<? super T> comparator;
 
     private AvlNode<T> root;
 
+    // sum of hashOf over the nodes, the hash codes of the values unless a subclass mixes in more, kept up to date
+    // by add and delete.
+    // The set operations and the parallel filter replace the root and leave it stale until hashCode() recomputes it.
+    private int hash;
+
+    private boolean hashStale;
+
+    // counts the bulk operations that relink the tree, they may cut off nodes a cursor still points at
+    private int relinks;
+
+    // null unless statistics are enabled, every use is guarded by TreeCounters.ENABLED
+    private final TreeCounters counters = TreeCounters.ENABLED ? new TreeCounters() : null;
+
+    // what JMX reads, see publishStats. The JMX thread never walks the tree or touches the counters,
+    // a reset through JMX is only requested here and carried out by the next publication
+    private volatile TreeStats published;
+
+    private volatile boolean resetRequested;
+
     public AvlTree(Comparator<? super T> comparator) {
         this.comparator = comparator;
     }
 
+    public static <T> AvlTree<T> fromSorted(T[] values, Comparator<? super T> comparator) {
+        return fromSorted(Arrays.asList(values).iterator(), values.length, comparator);
+    }
+
+    // the comparator must be safe to call from several threads
+    public static <T> AvlTree<T> parallelFromSorted(T[] values, Comparator<? super T> comparator) {
+        AvlTree<T> tree = new AvlTree<>(comparator);
+        tree.root = new BuildTask<>(values, 0, values.length, comparator).invoke();
+        tree.hashStale = true;
+        return tree;
+    }
+
+    public static <T> AvlTree<T> fromSorted(Collection<? extends T> values, Comparator<? super T> comparator) {
+        return fromSorted(values.iterator(), values.size(), comparator);
+    }
+
+    public static <T> AvlTree<T> fromSorted(Iterator<? extends T> values, int size,
+                                            Comparator<? super T> comparator) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+        AvlTree<T> tree = new AvlTree<>(comparator);
+        tree.root = new SortedBuilder<T>(values, comparator).build(size);
+        tree.hashStale = true;
+        return tree;
+    }
+
     @Override
     public Comparator<? super T> comparator() {
         return comparator;
@@ -25,6 +81,11 @@ public class AvlTree<T> implements Tree<T> {
         return root == null;
     }
 
+    @Override
+    public int size() {
+        return size(root);
+    }
+
     @Override
     public boolean contains(T value) {
         return find(value) != null;
@@ -34,14 +95,15 @@ public class AvlTree<T> implements Tree<T> {
     public boolean add(T value) {
         AvlNode<T> node = root;
         if (node == null) {
-            root = new AvlNode<>(value);
+            root = newNode(value, null);
+            hash += hashOf(root);
             return true;
         }
         AvlNode<T> parent;
         int cmp;
         do {
             parent = node;
-            cmp = comparator.compare(value, node.value);
+            cmp = compare(value, node.value);
             if (cmp < 0) {
                 node = node.left;
             } else if (cmp > 0) {
@@ -50,32 +112,64 @@ public class AvlTree<T> implements Tree<T> {
                 return false;
             }
         } while (node != null);
-        AvlNode<T> newNode = new AvlNode<>(value, parent);
-        if (cmp < 0) {
-            parent.left = newNode;
-            parent.balance--;
-        } else {
-            parent.right = newNode;
-            parent.balance++;
-        }
-        fixAfterInsertion(parent);
+        attach(parent, cmp, value);
         return true;
     }
 
+    @Override
+    public Cursor<T> cursor() {
+        return new AvlCursor();
+    }
+
     @Override
     public Node<T> find(T value) {
         AvlNode<T> node = root;
+        int depth = 0;
         while (node != null) {
-            int cmp = comparator.compare(value, node.value);
+            depth++;
+            int cmp = compare(value, node.value);
             if (cmp < 0) {
                 node = node.left;
             } else if (cmp > 0) {
                 node = node.right;
+            } else {
+                break;
+            }
+        }
+        if (TreeCounters.ENABLED) {
+            counters.search(depth);
+        }
+        return node;
+    }
+
+    @Override
+    public int rank(T value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        Objects.checkIndex(index, size());
+        AvlNode<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
             } else {
                 return node;
             }
         }
-        return null;
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        if (compare(lo, hi) > 0) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
     }
 
     @Override
@@ -92,6 +186,9 @@ public class AvlTree<T> implements Tree<T> {
     public void clear() {
         AvlNode<T> node = root;
         root = null;
+        relinks++;
+        hash = 0;
+        hashStale = false;
         if (node != null) {
             while (node.left != null) {
                 node = node.left;
@@ -189,24 +286,112 @@ public class AvlTree<T> implements Tree<T> {
         AvlNode<T> parent = node.parent;
         while (parent != null && node == parent.left) {
             node = parent;
-            parent = parent.left;
+            parent = parent.parent;
         }
         return parent;
     }
 
+    @Override
+    public Node<T> floor(T value) {
+        AvlNode<T> node = root;
+        AvlNode<T> result = null;
+        int depth = 0;
+        while (node != null) {
+            depth++;
+            int cmp = compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                result = node;
+                break;
+            }
+        }
+        if (TreeCounters.ENABLED) {
+            counters.search(depth);
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        AvlNode<T> node = root;
+        AvlNode<T> result = null;
+        int depth = 0;
+        while (node != null) {
+            depth++;
+            int cmp = compare(value, node.value);
+            if (cmp < 0) {
+                result = node;
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                result = node;
+                break;
+            }
+        }
+        if (TreeCounters.ENABLED) {
+            counters.search(depth);
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        AvlNode<T> node = root;
+        AvlNode<T> result = null;
+        int depth = 0;
+        while (node != null) {
+            depth++;
+            if (compare(value, node.value) > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        if (TreeCounters.ENABLED) {
+            counters.search(depth);
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        AvlNode<T> node = root;
+        AvlNode<T> result = null;
+        int depth = 0;
+        while (node != null) {
+            depth++;
+            if (compare(value, node.value) < 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        if (TreeCounters.ENABLED) {
+            counters.search(depth);
+        }
+        return result;
+    }
+
     @Override
     public void delete(Node<T> treeNode) {
         AvlNode<T> node = (AvlNode<T>) treeNode;
         if (node.value == null) {
             return;
         }
+        hash -= hashOf(node);
         if (node.left != null && node.right != null) {
-            AvlNode<T> replacement = node.right;
-            while (replacement.left != null) {
-                replacement = replacement.left;
+            AvlNode<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
             }
-            node.value = replacement.value;
-            node = replacement;
+            swapWithSuccessor(node, successor);
         }
         AvlNode<T> replacement = node.left != null
                 ? node.left
@@ -214,54 +399,76 @@ public class AvlTree<T> implements Tree<T> {
         AvlNode<T> parent = node.parent;
         if (replacement != null) {
             replacement.parent = parent;
-            boolean needFix;
-            if (parent == null) {
-                root = replacement;
-                needFix = false;
-            } else if (node == parent.left) {
-                parent.left = replacement;
-                parent.balance++;
-                needFix = parent.balance != 1;
-            } else {
-                parent.right = replacement;
-                parent.balance--;
-                needFix = parent.balance != -1;
-            }
-            node.value = null;
-            node.parent = null;
-            node.left = null;
-            node.right = null;
-            if (needFix) {
-                fixAfterDeletion(parent);
-            }
-        } else if (parent == null) {
-            root = null;
+        }
+        boolean needFix;
+        if (parent == null) {
+            root = replacement;
+            needFix = false;
+        } else if (node == parent.left) {
+            parent.left = replacement;
+            parent.balance++;
+            needFix = parent.balance != 1;
         } else {
-            node.value = null;
-            node.parent = null;
-            if (node == parent.left) {
-                parent.left = null;
-            } else {
-                parent.right = null;
-            }
+            parent.right = replacement;
+            parent.balance--;
+            needFix = parent.balance != -1;
+        }
+        for (AvlNode<T> p = parent; p != null; p = p.parent) {
+            p.size--;
+            augment(p);
+        }
+        node.value = null;
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        if (needFix) {
             fixAfterDeletion(parent);
         }
     }
 
+    // The filter is tested on every node first. When few nodes match they are deleted one by one, otherwise
+    // the survivors are linked into a new balanced tree in O(n), which costs less than the rebalancing of many deletes
     @Override
     public boolean removeIf(Predicate<? super Node<T>> filter) {
-        boolean removed = false;
-        Node<T> node = first();
-        Node<T> next = node;
-        while (node != null) {
-            next = next(next);
+        List<AvlNode<T>> removed = new ArrayList<>();
+        for (Node<T> node = first(); node != null; node = next(node)) {
             if (filter.test(node)) {
-                removed = true;
+                removed.add((AvlNode<T>) node);
+            }
+        }
+        if (removed.isEmpty()) {
+            return false;
+        }
+        int size = size();
+        if ((long) removed.size() * heightOf(size) < size) {
+            for (AvlNode<T> node : removed) {
                 delete(node);
             }
-            node = next;
+            return true;
+        }
+        for (AvlNode<T> node : removed) {
+            hash -= hashOf(node);
+            node.value = null;
+        }
+        @SuppressWarnings("unchecked")
+        AvlNode<T>[] survivors = (AvlNode<T>[]) new AvlNode<?>[size - removed.size()];
+        int count = 0;
+        for (Node<T> node = first(); node != null; node = next(node)) {
+            if (node.getValue() != null) {
+                survivors[count++] = (AvlNode<T>) node;
+            }
         }
-        return removed;
+        for (AvlNode<T> node : removed) {
+            node.parent = null;
+            node.left = null;
+            node.right = null;
+        }
+        root = link(survivors, 0, survivors.length);
+        if (root != null) {
+            root.parent = null;
+        }
+        relinks++;
+        return true;
     }
 
     @Override
@@ -299,6 +506,247 @@ public class AvlTree<T> implements Tree<T> {
         });
     }
 
+    // links a new node below the parent where a search for the value ended with cmp, and rebalances
+    private AvlNode<T> attach(AvlNode<T> parent, int cmp, T value) {
+        AvlNode<T> newNode = newNode(value, parent);
+        if (cmp < 0) {
+            parent.left = newNode;
+            parent.balance--;
+        } else {
+            parent.right = newNode;
+            parent.balance++;
+        }
+        int depth = 1;
+        for (AvlNode<T> p = parent; p != null; p = p.parent) {
+            p.size++;
+            augment(p);
+            depth++;
+        }
+        if (TreeCounters.ENABLED) {
+            counters.insertion(depth);
+        }
+        hash += hashOf(newNode);
+        fixAfterInsertion(parent);
+        return newNode;
+    }
+
+    // creates every node of the tree, a subclass that keeps more per node returns its own kind of node
+    AvlNode<T> newNode(T value, AvlNode<T> parent) {
+        return new AvlNode<>(value, parent);
+    }
+
+    // Recomputes what a subclass keeps per node from the node and its children. It is called bottom-up
+    // wherever the size of a node is recomputed, so it sees rotations, walk-ups, splits and joins.
+    void augment(AvlNode<T> node) {
+    }
+
+    // what the node adds to the running hash, a subclass that keeps more per node may mix it in
+    int hashOf(AvlNode<T> node) {
+        return Objects.hashCode(node.value);
+    }
+
+    // a subclass changed what hashOf returns for a node in place
+    void rehash(int oldHash, int newHash) {
+        hash += newHash - oldHash;
+    }
+
+    // throws IllegalStateException unless the JVM runs with -Dcom.example.tree.stats=true
+    public TreeStats stats() {
+        if (!TreeCounters.ENABLED) {
+            throw new IllegalStateException("tree statistics are disabled");
+        }
+        return counters.snapshot(size(), height(root));
+    }
+
+    public void resetStats() {
+        if (TreeCounters.ENABLED) {
+            counters.reset();
+        }
+    }
+
+    // Takes the snapshot the MXBean of Trees.registerStats shows until the next call. Like stats() it reads the
+    // tree and its counters, so it must not run while the tree is changed: call it from the thread that changes
+    // the tree, between its changes.
+    public void publishStats() {
+        if (resetRequested) {
+            resetRequested = false;
+            resetStats();
+        }
+        published = stats();
+    }
+
+    TreeStats publishedStats() {
+        return published;
+    }
+
+    void requestStatsReset() {
+        resetRequested = true;
+    }
+
+    // splits hand off whole subtrees, the tree must not be changed while the spliterator is in use
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(comparator, root, size(), node -> {
+            return ((AvlNode<T>) node).size;
+        });
+    }
+
+    // moves the successor into the place of the node, so that node handles stay attached to their values
+    private void swapWithSuccessor(AvlNode<T> node, AvlNode<T> successor) {
+        AvlNode<T> parent = node.parent;
+        AvlNode<T> successorParent = successor.parent;
+        AvlNode<T> successorRight = successor.right;
+        byte balance = node.balance;
+        int size = node.size;
+
+        successor.parent = parent;
+        if (parent == null) {
+            root = successor;
+        } else if (parent.left == node) {
+            parent.left = successor;
+        } else {
+            parent.right = successor;
+        }
+        successor.left = node.left;
+        successor.left.parent = successor;
+        if (successorParent == node) {
+            successor.right = node;
+            node.parent = successor;
+        } else {
+            successor.right = node.right;
+            successor.right.parent = successor;
+            successorParent.left = node;
+            node.parent = successorParent;
+        }
+        node.left = null;
+        node.right = successorRight;
+        if (successorRight != null) {
+            successorRight.parent = node;
+        }
+        node.balance = successor.balance;
+        node.size = successor.size;
+        successor.balance = balance;
+        successor.size = size;
+    }
+
+    @Override
+    public boolean removeRange(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        int cmp = compare(lo, hi);
+        if (cmp > 0 || (cmp == 0 && !(loInclusive && hiInclusive))) {
+            return false;
+        }
+        int size = size();
+        Parts<T> parts = new Parts<>();
+        int[] height = parts.height;
+        // the dropped nodes are visited anyway to detach them, so the running hash is kept rather than made stale
+        boolean stale = hashStale;
+        int dropped = 0;
+
+        split(root, height(root), lo, parts);
+        AvlNode<T> left = parts.left;
+        int leftHeight = parts.leftHeight;
+        AvlNode<T> right = parts.right;
+        int rightHeight = parts.rightHeight;
+        if (parts.middle != null) {
+            if (loInclusive) {
+                dropped += detach(parts.middle);
+            } else {
+                left = join(left, leftHeight, parts.middle, null, 0, height);
+                leftHeight = height[0];
+            }
+        }
+
+        split(right, rightHeight, hi, parts);
+        dropped += detach(parts.left);
+        right = parts.right;
+        rightHeight = parts.rightHeight;
+        if (parts.middle != null) {
+            if (hiInclusive) {
+                dropped += detach(parts.middle);
+            } else {
+                right = join(null, 0, parts.middle, right, rightHeight, height);
+                rightHeight = height[0];
+            }
+        }
+
+        setRoot(join(left, leftHeight, right, rightHeight, height));
+        hash -= dropped;
+        hashStale = stale;
+        return size() != size;
+    }
+
+    public boolean union(AvlTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        int size = size();
+        setRoot(union(root, height(root), other.root, new Parts<>()));
+        return size() != size;
+    }
+
+    public boolean intersection(AvlTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        int size = size();
+        setRoot(intersection(root, height(root), other.root, new Parts<>()));
+        return size() != size;
+    }
+
+    public boolean difference(AvlTree<T> other) {
+        if (other == this) {
+            boolean empty = isEmpty();
+            clear();
+            return !empty;
+        }
+        int size = size();
+        setRoot(difference(root, height(root), other.root, new Parts<>()));
+        return size() != size;
+    }
+
+    public boolean parallelUnion(AvlTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        return parallel(Operation.UNION, other);
+    }
+
+    public boolean parallelIntersection(AvlTree<T> other) {
+        if (other == this) {
+            return false;
+        }
+        return parallel(Operation.INTERSECTION, other);
+    }
+
+    public boolean parallelDifference(AvlTree<T> other) {
+        if (other == this) {
+            boolean empty = isEmpty();
+            clear();
+            return !empty;
+        }
+        return parallel(Operation.DIFFERENCE, other);
+    }
+
+    // the filter is called from several threads and in no particular order
+    public boolean parallelRemoveByValueIf(Predicate<? super T> filter) {
+        int size = size();
+        setRoot(new FilterTask(root, height(root), filter).invoke());
+        return size() != size;
+    }
+
+    private boolean parallel(Operation operation, AvlTree<T> other) {
+        int size = size();
+        setRoot(new SetOperationTask(operation, root, height(root), other.root).invoke());
+        return size() != size;
+    }
+
+    private int compare(T a, T b) {
+        if (TreeCounters.ENABLED) {
+            counters.comparisons++;
+        }
+        return comparator.compare(a, b);
+    }
+
     private void rotateLeft(AvlNode<T> p) {
         if (p != null) {
             AvlNode<T> r = p.right;
@@ -316,6 +764,10 @@ public class AvlTree<T> implements Tree<T> {
             }
             r.left = p;
             p.parent = r;
+            r.size = p.size;
+            p.size = size(p.left) + size(p.right) + 1;
+            augment(p);
+            augment(r);
         }
     }
 
@@ -336,16 +788,23 @@ public class AvlTree<T> implements Tree<T> {
             }
             l.right = p;
             p.parent = l;
+            l.size = p.size;
+            p.size = size(p.left) + size(p.right) + 1;
+            augment(p);
+            augment(l);
         }
     }
 
     private void fixAfterInsertion(AvlNode<T> x) {
+        int steps = 0;
         while (x.balance != 0) {
+            steps++;
             if (x.balance == 2) { // right heavy by 2?
                 if (x.right.balance == 1) {
                     x.balance = 0;
                     x.right.balance = 0;
                     rotateLeft(x);
+                    countRotation(false);
                 } else { // x.right.balance = -1
                     int rlBalance = x.right.left.balance;
                     x.right.left.balance = 0;
@@ -358,6 +817,7 @@ public class AvlTree<T> implements Tree<T> {
 
                     rotateRight(x.right);
                     rotateLeft(x);
+                    countRotation(true);
                 }
                 break;
             } else if (x.balance == -2) {
@@ -365,6 +825,7 @@ public class AvlTree<T> implements Tree<T> {
                     x.balance = 0;
                     x.left.balance = 0;
                     rotateRight(x);
+                    countRotation(false);
                 } else { // x.left.balance = 1
                     int lrBalance = x.left.right.balance;
                     x.left.right.balance = 0;
@@ -377,6 +838,7 @@ public class AvlTree<T> implements Tree<T> {
 
                     rotateLeft(x.left);
                     rotateRight(x);
+                    countRotation(true);
                 }
                 break;
             }
@@ -390,19 +852,27 @@ public class AvlTree<T> implements Tree<T> {
 
             x = x.parent;
         }
+        if (TreeCounters.ENABLED) {
+            counters.insertionFixes++;
+            counters.insertionFixSteps += steps;
+        }
     }
 
     private void fixAfterDeletion(AvlNode<T> x) {
+        int steps = 0;
         while (true) {
+            steps++;
             if (x.balance == 2) { // right heavy by 2?
                 if (x.right.balance == 1) {
                     x.balance = 0;
                     x.right.balance = 0;
                     rotateLeft(x);
+                    countRotation(false);
                 } else if (x.right.balance == 0) {
                     x.balance = 1;
                     x.right.balance = -1;
                     rotateLeft(x);
+                    countRotation(false);
                     break;
                 } else { // x.right.balance = -1
                     int rlBalance = x.right.left.balance;
@@ -415,6 +885,7 @@ public class AvlTree<T> implements Tree<T> {
                         x.right.balance = 1;
                     rotateRight(x.right);
                     rotateLeft(x);
+                    countRotation(true);
                 }
                 x = x.parent;
             } else if (x.balance == -2) {
@@ -422,10 +893,12 @@ public class AvlTree<T> implements Tree<T> {
                     x.balance = 0;
                     x.left.balance = 0;
                     rotateRight(x);
+                    countRotation(false);
                 } else if (x.left.balance == 0) {
                     x.balance = -1;
                     x.left.balance = 1;
                     rotateRight(x);
+                    countRotation(false);
                     break;
                 } else { // (x.left.balance == 1)
                     int lrBalance = x.left.right.balance;
@@ -438,6 +911,7 @@ public class AvlTree<T> implements Tree<T> {
                         x.balance = 1;
                     rotateLeft(x.left);
                     rotateRight(x);
+                    countRotation(true);
                 }
                 x = x.parent;
             }
@@ -458,6 +932,410 @@ public class AvlTree<T> implements Tree<T> {
 
             x = x.parent;
         }
+        if (TreeCounters.ENABLED) {
+            counters.deletionFixes++;
+            counters.deletionFixSteps += steps;
+        }
+    }
+
+    private void countRotation(boolean isDouble) {
+        if (TreeCounters.ENABLED) {
+            if (isDouble) {
+                counters.doubleRotations++;
+            } else {
+                counters.singleRotations++;
+            }
+        }
+    }
+
+    private void setRoot(AvlNode<T> node) {
+        if (node != null) {
+            node.parent = null;
+        }
+        root = node;
+        hashStale = true;
+        relinks++;
+    }
+
+    // the node is not shared with the other tree, which is only read
+    private AvlNode<T> union(AvlNode<T> node, int nodeHeight, AvlNode<T> other, Parts<T> parts) {
+        int[] height = parts.height;
+        if (other == null) {
+            height[0] = nodeHeight;
+            return node;
+        }
+        if (node == null) {
+            height[0] = height(other);
+            return copy(other);
+        }
+        split(node, nodeHeight, other.value, parts);
+        AvlNode<T> left = parts.left;
+        int leftHeight = parts.leftHeight;
+        AvlNode<T> right = parts.right;
+        int rightHeight = parts.rightHeight;
+        AvlNode<T> pivot = parts.middle != null
+                ? parts.middle
+                : newNode(other.value, null);
+        left = union(left, leftHeight, other.left, parts);
+        leftHeight = height[0];
+        right = union(right, rightHeight, other.right, parts);
+        rightHeight = height[0];
+        return join(left, leftHeight, pivot, right, rightHeight, height);
+    }
+
+    private AvlNode<T> intersection(AvlNode<T> node, int nodeHeight, AvlNode<T> other, Parts<T> parts) {
+        int[] height = parts.height;
+        if (node == null || other == null) {
+            detach(node);
+            height[0] = 0;
+            return null;
+        }
+        split(node, nodeHeight, other.value, parts);
+        AvlNode<T> left = parts.left;
+        int leftHeight = parts.leftHeight;
+        AvlNode<T> right = parts.right;
+        int rightHeight = parts.rightHeight;
+        AvlNode<T> pivot = parts.middle;
+        left = intersection(left, leftHeight, other.left, parts);
+        leftHeight = height[0];
+        right = intersection(right, rightHeight, other.right, parts);
+        rightHeight = height[0];
+        return pivot != null
+                ? join(left, leftHeight, pivot, right, rightHeight, height)
+                : join(left, leftHeight, right, rightHeight, height);
+    }
+
+    private AvlNode<T> difference(AvlNode<T> node, int nodeHeight, AvlNode<T> other, Parts<T> parts) {
+        int[] height = parts.height;
+        if (node == null || other == null) {
+            height[0] = nodeHeight;
+            return node;
+        }
+        split(node, nodeHeight, other.value, parts);
+        AvlNode<T> left = parts.left;
+        int leftHeight = parts.leftHeight;
+        AvlNode<T> right = parts.right;
+        int rightHeight = parts.rightHeight;
+        if (parts.middle != null) {
+            parts.middle.value = null;
+        }
+        left = difference(left, leftHeight, other.left, parts);
+        leftHeight = height[0];
+        right = difference(right, rightHeight, other.right, parts);
+        rightHeight = height[0];
+        return join(left, leftHeight, right, rightHeight, height);
+    }
+
+    private AvlNode<T> filter(AvlNode<T> node, int nodeHeight, Predicate<? super T> filter, int[] height) {
+        if (node == null) {
+            height[0] = 0;
+            return null;
+        }
+        AvlNode<T> right = node.right;
+        int rightHeight = rightHeight(node, nodeHeight);
+        AvlNode<T> left = filter(node.left, leftHeight(node, nodeHeight), filter, height);
+        int leftHeight = height[0];
+        boolean removed = filter.test(node.value);
+        right = filter(right, rightHeight, filter, height);
+        rightHeight = height[0];
+        if (removed) {
+            node.value = null;
+            node.parent = null;
+            node.left = null;
+            node.right = null;
+            return join(left, leftHeight, right, rightHeight, height);
+        }
+        return join(left, leftHeight, node, right, rightHeight, height);
+    }
+
+    // Clears the nodes of a subtree that a bulk operation drops, so that handles to them read as stale like deleted
+    // ones, and returns what they added to the running hash
+    private int detach(AvlNode<T> node) {
+        if (node == null) {
+            return 0;
+        }
+        int dropped = hashOf(node) + detach(node.left) + detach(node.right);
+        node.value = null;
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        return dropped;
+    }
+
+    // splits the subtree into the values less than, equal to and greater than the given one
+    private void split(AvlNode<T> node, int nodeHeight, T value, Parts<T> parts) {
+        if (node == null) {
+            parts.left = null;
+            parts.leftHeight = 0;
+            parts.middle = null;
+            parts.right = null;
+            parts.rightHeight = 0;
+            return;
+        }
+        AvlNode<T> left = node.left;
+        AvlNode<T> right = node.right;
+        int leftHeight = leftHeight(node, nodeHeight);
+        int rightHeight = rightHeight(node, nodeHeight);
+        int cmp = compare(value, node.value);
+        if (cmp < 0) {
+            split(left, leftHeight, value, parts);
+            parts.right = join(parts.right, parts.rightHeight, node, right, rightHeight, parts.height);
+            parts.rightHeight = parts.height[0];
+        } else if (cmp > 0) {
+            split(right, rightHeight, value, parts);
+            parts.left = join(left, leftHeight, node, parts.left, parts.leftHeight, parts.height);
+            parts.leftHeight = parts.height[0];
+        } else {
+            parts.left = left;
+            parts.leftHeight = leftHeight;
+            parts.middle = node;
+            parts.right = right;
+            parts.rightHeight = rightHeight;
+            node.parent = null;
+            node.left = null;
+            node.right = null;
+            node.balance = 0;
+            node.size = 1;
+            augment(node);
+        }
+    }
+
+    // splits off the greatest node of the subtree into parts.middle and the rest into parts.left
+    private void splitLast(AvlNode<T> node, int nodeHeight, Parts<T> parts) {
+        if (node.right == null) {
+            parts.left = node.left;
+            parts.leftHeight = nodeHeight - 1;
+            parts.middle = node;
+            node.parent = null;
+            node.left = null;
+            node.balance = 0;
+            node.size = 1;
+            augment(node);
+            return;
+        }
+        AvlNode<T> left = node.left;
+        int leftHeight = leftHeight(node, nodeHeight);
+        splitLast(node.right, rightHeight(node, nodeHeight), parts);
+        parts.left = join(left, leftHeight, node, parts.left, parts.leftHeight, parts.height);
+        parts.leftHeight = parts.height[0];
+    }
+
+    // joins two subtrees, all values of the left one being less than the values of the right one
+    private AvlNode<T> join(AvlNode<T> left, int leftHeight, AvlNode<T> right, int rightHeight, int[] height) {
+        if (left == null) {
+            height[0] = rightHeight;
+            return right;
+        }
+        if (right == null) {
+            height[0] = leftHeight;
+            return left;
+        }
+        Parts<T> parts = new Parts<>();
+        splitLast(left, leftHeight, parts);
+        return join(parts.left, parts.leftHeight, parts.middle, right, rightHeight, height);
+    }
+
+    // joins two subtrees around a detached pivot that lies between them
+    private AvlNode<T> join(AvlNode<T> left, int leftHeight, AvlNode<T> pivot,
+                            AvlNode<T> right, int rightHeight, int[] height) {
+        if (leftHeight > rightHeight + 1) {
+            int leftLeftHeight = leftHeight(left, leftHeight);
+            AvlNode<T> joined = join(left.right, rightHeight(left, leftHeight), pivot, right, rightHeight, height);
+            left.right = joined;
+            joined.parent = left;
+            return rebalance(left, leftLeftHeight, height[0], height);
+        }
+        if (rightHeight > leftHeight + 1) {
+            int rightRightHeight = rightHeight(right, rightHeight);
+            AvlNode<T> joined = join(left, leftHeight, pivot, right.left, leftHeight(right, rightHeight), height);
+            right.left = joined;
+            joined.parent = right;
+            return rebalance(right, height[0], rightRightHeight, height);
+        }
+        pivot.left = left;
+        pivot.right = right;
+        if (left != null) {
+            left.parent = pivot;
+        }
+        if (right != null) {
+            right.parent = pivot;
+        }
+        height[0] = update(pivot, leftHeight, rightHeight);
+        return pivot;
+    }
+
+    // restores the balance of a node whose children heights differ by at most two
+    private AvlNode<T> rebalance(AvlNode<T> node, int leftHeight, int rightHeight, int[] height) {
+        if (rightHeight - leftHeight == 2) {
+            AvlNode<T> r = node.right;
+            int rlHeight = leftHeight(r, rightHeight);
+            int rrHeight = rightHeight(r, rightHeight);
+            if (rrHeight >= rlHeight) {
+                countRotation(false);
+                node.right = r.left;
+                if (r.left != null) {
+                    r.left.parent = node;
+                }
+                int nodeHeight = update(node, leftHeight, rlHeight);
+                r.left = node;
+                node.parent = r;
+                height[0] = update(r, nodeHeight, rrHeight);
+                return r;
+            }
+            countRotation(true);
+            AvlNode<T> rl = r.left;
+            int rllHeight = leftHeight(rl, rlHeight);
+            int rlrHeight = rightHeight(rl, rlHeight);
+            node.right = rl.left;
+            if (rl.left != null) {
+                rl.left.parent = node;
+            }
+            r.left = rl.right;
+            if (rl.right != null) {
+                rl.right.parent = r;
+            }
+            int nodeHeight = update(node, leftHeight, rllHeight);
+            int rHeight = update(r, rlrHeight, rrHeight);
+            rl.left = node;
+            node.parent = rl;
+            rl.right = r;
+            r.parent = rl;
+            height[0] = update(rl, nodeHeight, rHeight);
+            return rl;
+        }
+        if (leftHeight - rightHeight == 2) {
+            AvlNode<T> l = node.left;
+            int llHeight = leftHeight(l, leftHeight);
+            int lrHeight = rightHeight(l, leftHeight);
+            if (llHeight >= lrHeight) {
+                countRotation(false);
+                node.left = l.right;
+                if (l.right != null) {
+                    l.right.parent = node;
+                }
+                int nodeHeight = update(node, lrHeight, rightHeight);
+                l.right = node;
+                node.parent = l;
+                height[0] = update(l, llHeight, nodeHeight);
+                return l;
+            }
+            countRotation(true);
+            AvlNode<T> lr = l.right;
+            int lrlHeight = leftHeight(lr, lrHeight);
+            int lrrHeight = rightHeight(lr, lrHeight);
+            l.right = lr.left;
+            if (lr.left != null) {
+                lr.left.parent = l;
+            }
+            node.left = lr.right;
+            if (lr.right != null) {
+                lr.right.parent = node;
+            }
+            int lHeight = update(l, llHeight, lrlHeight);
+            int nodeHeight = update(node, lrrHeight, rightHeight);
+            lr.left = l;
+            l.parent = lr;
+            lr.right = node;
+            node.parent = lr;
+            height[0] = update(lr, lHeight, nodeHeight);
+            return lr;
+        }
+        height[0] = update(node, leftHeight, rightHeight);
+        return node;
+    }
+
+    // recomputes the balance and size of a node from its children, returns its height
+    private int update(AvlNode<T> node, int leftHeight, int rightHeight) {
+        node.balance = (byte) (rightHeight - leftHeight);
+        node.size = size(node.left) + size(node.right) + 1;
+        augment(node);
+        return Math.max(leftHeight, rightHeight) + 1;
+    }
+
+    // links the sorted nodes into a balanced subtree, in the shape SortedBuilder produces
+    private AvlNode<T> link(AvlNode<T>[] nodes, int from, int to) {
+        int size = to - from;
+        if (size == 0) {
+            return null;
+        }
+        int leftSize = (size - 1) / 2;
+        int middle = from + leftSize;
+        AvlNode<T> node = nodes[middle];
+        AvlNode<T> left = link(nodes, from, middle);
+        AvlNode<T> right = link(nodes, middle + 1, to);
+        node.left = left;
+        node.right = right;
+        if (left != null) {
+            left.parent = node;
+        }
+        if (right != null) {
+            right.parent = node;
+        }
+        node.balance = (byte) (heightOf(size - 1 - leftSize) - heightOf(leftSize));
+        node.size = size;
+        augment(node);
+        return node;
+    }
+
+    private AvlNode<T> copy(AvlNode<T> node) {
+        AvlNode<T> copy = newNode(node.value, null);
+        copy.balance = node.balance;
+        copy.size = node.size;
+        if (node.left != null) {
+            copy.left = copy(node.left);
+            copy.left.parent = copy;
+        }
+        if (node.right != null) {
+            copy.right = copy(node.right);
+            copy.right.parent = copy;
+        }
+        augment(copy);
+        return copy;
+    }
+
+    private static int height(AvlNode<?> node) {
+        int height = 0;
+        while (node != null) {
+            height++;
+            node = node.balance < 0 ? node.left : node.right;
+        }
+        return height;
+    }
+
+    private static int leftHeight(AvlNode<?> node, int height) {
+        return node.balance > 0 ? height - 2 : height - 1;
+    }
+
+    private static int rightHeight(AvlNode<?> node, int height) {
+        return node.balance < 0 ? height - 2 : height - 1;
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(T value, boolean inclusive) {
+        int rank = 0;
+        AvlNode<T> node = root;
+        while (node != null) {
+            int cmp = compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                rank += size(node.left);
+                return inclusive ? rank + 1 : rank;
+            }
+        }
+        return rank;
+    }
+
+    private static int size(AvlNode<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    // height of the tree that SortedBuilder produces for the given number of nodes
+    private static int heightOf(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
     }
 
     @Override
@@ -466,6 +1344,10 @@ public class AvlTree<T> implements Tree<T> {
         if (o == null || getClass() != o.getClass()) return false;
         @SuppressWarnings("unchecked")
         AvlTree<T> tree = (AvlTree<T>) o;
+        // stale hashes are not recomputed here, so equals does not write to either tree
+        if (size() != tree.size() || (!hashStale && !tree.hashStale && hash != tree.hash)) {
+            return false;
+        }
         Node<T> n1 = first();
         Node<T> n2 = tree.first();
         while (n1 != null) {
@@ -481,13 +1363,18 @@ public class AvlTree<T> implements Tree<T> {
         return n2 == null;
     }
 
+    // the sum of the hash codes of the values, as for a Set
     @Override
     public int hashCode() {
-        int result = 1;
-        for (Node<T> node = first(); node != null; node = next(node)) {
-            result = 31 * result + node.hashCode();
+        if (hashStale) {
+            int result = 0;
+            for (Node<T> node = first(); node != null; node = next(node)) {
+                result += hashOf((AvlNode<T>) node);
+            }
+            hash = result;
+            hashStale = false;
         }
-        return result;
+        return hash;
     }
 
     @Override
@@ -505,23 +1392,382 @@ public class AvlTree<T> implements Tree<T> {
         return sb.toString();
     }
 
-    private static class AvlNode<T> implements Node<T> {
+    // Searches start from the current node and climb only as far as the smallest subtree that can hold the value,
+    // so a value near the previous one costs O(log d) comparisons. Keeping the subtree sizes still walks to the root.
+    private class AvlCursor implements Cursor<T> {
+
+        private AvlNode<T> node;
+
+        // the relinks of the tree when the node was reached, after a later one the node may not be in the tree
+        private int relinks;
+
+        @Override
+        public Node<T> node() {
+            return node;
+        }
+
+        @Override
+        public boolean seek(T value) {
+            AvlNode<T> start = start(value);
+            relinks = AvlTree.this.relinks;
+            if (start == null) {
+                return false;
+            }
+            AvlNode<T> parent;
+            AvlNode<T> next = start;
+            do {
+                parent = next;
+                int cmp = compare(value, next.value);
+                if (cmp < 0) {
+                    next = next.left;
+                } else if (cmp > 0) {
+                    next = next.right;
+                } else {
+                    node = next;
+                    return true;
+                }
+            } while (next != null);
+            node = parent;
+            return false;
+        }
+
+        @Override
+        public boolean insertHere(T value) {
+            AvlNode<T> start = start(value);
+            relinks = AvlTree.this.relinks;
+            if (start == null) {
+                root = newNode(value, null);
+                hash += hashOf(root);
+                node = root;
+                return true;
+            }
+            AvlNode<T> parent;
+            AvlNode<T> next = start;
+            int cmp;
+            do {
+                parent = next;
+                cmp = compare(value, next.value);
+                if (cmp < 0) {
+                    next = next.left;
+                } else if (cmp > 0) {
+                    next = next.right;
+                } else {
+                    node = next;
+                    return false;
+                }
+            } while (next != null);
+            node = attach(parent, cmp, value);
+            return true;
+        }
+
+        @Override
+        public void removeHere() {
+            AvlNode<T> current = node;
+            if (current == null || current.value == null) {
+                throw new IllegalStateException("no current node");
+            }
+            AvlNode<T> next = (AvlNode<T>) next(current);
+            if (next == null) {
+                next = (AvlNode<T>) prev(current);
+            }
+            delete(current);
+            node = next;
+        }
+
+        // the lowest node around the current one whose subtree range holds the value. The range is bounded on the
+        // side of the value by the first ancestor reached from that side, so only those ancestors are compared
+        private AvlNode<T> start(T value) {
+            AvlNode<T> current = node;
+            if (current == null || current.value == null || relinks != AvlTree.this.relinks) {
+                return root;
+            }
+            int cmp = compare(value, current.value);
+            if (cmp == 0) {
+                return current;
+            }
+            AvlNode<T> start = current;
+            while (current.parent != null) {
+                AvlNode<T> parent = current.parent;
+                if (cmp > 0 ? current == parent.left : current == parent.right) {
+                    int parentCmp = compare(value, parent.value);
+                    if (parentCmp == 0) {
+                        return parent;
+                    }
+                    if ((parentCmp < 0) == (cmp > 0)) {
+                        return start;
+                    }
+                    start = parent;
+                }
+                current = parent;
+            }
+            return start;
+        }
+    }
+
+    private enum Operation {
+        UNION,
+        INTERSECTION,
+        DIFFERENCE
+    }
+
+    @SuppressWarnings("serial")
+    private class SetOperationTask extends RecursiveTask<AvlNode<T>> {
+
+        private final Operation operation;
+
+        private final AvlNode<T> node;
+
+        private final int nodeHeight;
+
+        private final AvlNode<T> other;
+
+        private int height;
+
+        private SetOperationTask(Operation operation, AvlNode<T> node, int nodeHeight, AvlNode<T> other) {
+            this.operation = operation;
+            this.node = node;
+            this.nodeHeight = nodeHeight;
+            this.other = other;
+        }
+
+        @Override
+        protected AvlNode<T> compute() {
+            Parts<T> parts = new Parts<>();
+            AvlNode<T> result;
+            if (node == null || other == null || size(node) + size(other) <= PARALLEL_THRESHOLD) {
+                switch (operation) {
+                    case UNION:
+                        result = union(node, nodeHeight, other, parts);
+                        break;
+                    case INTERSECTION:
+                        result = intersection(node, nodeHeight, other, parts);
+                        break;
+                    default:
+                        result = difference(node, nodeHeight, other, parts);
+                }
+                height = parts.height[0];
+                return result;
+            }
+            split(node, nodeHeight, other.value, parts);
+            AvlNode<T> pivot = parts.middle;
+            SetOperationTask leftTask = new SetOperationTask(operation, parts.left, parts.leftHeight, other.left);
+            SetOperationTask rightTask = new SetOperationTask(operation, parts.right, parts.rightHeight, other.right);
+            leftTask.fork();
+            AvlNode<T> right = rightTask.compute();
+            AvlNode<T> left = leftTask.join();
+            switch (operation) {
+                case UNION:
+                    if (pivot == null) {
+                        pivot = newNode(other.value, null);
+                    }
+                    break;
+                case DIFFERENCE:
+                    if (pivot != null) {
+                        pivot.value = null;
+                        pivot = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            result = pivot != null
+                    ? AvlTree.this.join(left, leftTask.height, pivot, right, rightTask.height, parts.height)
+                    : AvlTree.this.join(left, leftTask.height, right, rightTask.height, parts.height);
+            height = parts.height[0];
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class FilterTask extends RecursiveTask<AvlNode<T>> {
+
+        private final AvlNode<T> node;
+
+        private final int nodeHeight;
+
+        private final Predicate<? super T> filter;
+
+        private int height;
+
+        private FilterTask(AvlNode<T> node, int nodeHeight, Predicate<? super T> filter) {
+            this.node = node;
+            this.nodeHeight = nodeHeight;
+            this.filter = filter;
+        }
+
+        @Override
+        protected AvlNode<T> compute() {
+            int[] height = new int[1];
+            AvlNode<T> result;
+            if (size(node) <= PARALLEL_THRESHOLD) {
+                result = filter(node, nodeHeight, filter, height);
+                this.height = height[0];
+                return result;
+            }
+            FilterTask leftTask = new FilterTask(node.left, leftHeight(node, nodeHeight), filter);
+            FilterTask rightTask = new FilterTask(node.right, rightHeight(node, nodeHeight), filter);
+            leftTask.fork();
+            boolean removed = filter.test(node.value);
+            AvlNode<T> right = rightTask.compute();
+            AvlNode<T> left = leftTask.join();
+            if (removed) {
+                node.value = null;
+                node.parent = null;
+                node.left = null;
+                node.right = null;
+                result = AvlTree.this.join(left, leftTask.height, right, rightTask.height, height);
+            } else {
+                result = AvlTree.this.join(left, leftTask.height, node, right, rightTask.height, height);
+            }
+            this.height = height[0];
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class BuildTask<T> extends RecursiveTask<AvlNode<T>> {
+
+        private final T[] values;
+
+        private final int from;
+
+        private final int to;
+
+        private final Comparator<? super T> comparator;
+
+        private BuildTask(T[] values, int from, int to, Comparator<? super T> comparator) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
 
-        private T value;
+        @Override
+        protected AvlNode<T> compute() {
+            int size = to - from;
+            if (size <= PARALLEL_THRESHOLD) {
+                Iterator<T> iterator = Arrays.asList(values).subList(from, to).iterator();
+                return new SortedBuilder<T>(iterator, comparator).build(size);
+            }
+            int leftSize = (size - 1) / 2;
+            int rightSize = size - 1 - leftSize;
+            int middle = from + leftSize;
+            checkOrder(values[middle - 1], values[middle]);
+            checkOrder(values[middle], values[middle + 1]);
+            BuildTask<T> leftTask = new BuildTask<>(values, from, middle, comparator);
+            BuildTask<T> rightTask = new BuildTask<>(values, middle + 1, to, comparator);
+            leftTask.fork();
+            AvlNode<T> right = rightTask.compute();
+            AvlNode<T> left = leftTask.join();
+            AvlNode<T> node = new AvlNode<>(values[middle]);
+            node.left = left;
+            node.right = right;
+            left.parent = node;
+            right.parent = node;
+            node.balance = (byte) (heightOf(rightSize) - heightOf(leftSize));
+            node.size = size;
+            return node;
+        }
 
-        private AvlNode<T> parent;
+        private void checkOrder(T previous, T value) {
+            int cmp = comparator.compare(previous, value);
+            if (cmp > 0) {
+                throw new IllegalArgumentException("values are not sorted");
+            }
+            if (cmp == 0) {
+                throw new IllegalArgumentException("duplicate value");
+            }
+        }
+    }
+
+    private static class Parts<T> {
+
+        private final int[] height = new int[1];
 
         private AvlNode<T> left;
 
+        private int leftHeight;
+
+        private AvlNode<T> middle;
+
         private AvlNode<T> right;
 
+        private int rightHeight;
+    }
+
+    private static class SortedBuilder<T> {
+
+        private final Iterator<? extends T> values;
+
+        private final Comparator<? super T> comparator;
+
+        private T previous;
+
+        private boolean started;
+
+        private SortedBuilder(Iterator<? extends T> values, Comparator<? super T> comparator) {
+            this.values = values;
+            this.comparator = comparator;
+        }
+
+        private AvlNode<T> build(int size) {
+            if (size == 0) {
+                return null;
+            }
+            int leftSize = (size - 1) / 2;
+            int rightSize = size - 1 - leftSize;
+            AvlNode<T> left = build(leftSize);
+            AvlNode<T> node = new AvlNode<>(nextValue());
+            AvlNode<T> right = build(rightSize);
+            node.left = left;
+            node.right = right;
+            if (left != null) {
+                left.parent = node;
+            }
+            if (right != null) {
+                right.parent = node;
+            }
+            node.balance = (byte) (heightOf(rightSize) - heightOf(leftSize));
+            node.size = size;
+            return node;
+        }
+
+        private T nextValue() {
+            T value = values.next();
+            if (started) {
+                int cmp = comparator.compare(previous, value);
+                if (cmp > 0) {
+                    throw new IllegalArgumentException("values are not sorted");
+                }
+                if (cmp == 0) {
+                    throw new IllegalArgumentException("duplicate value");
+                }
+            }
+            previous = value;
+            started = true;
+            return value;
+        }
+    }
+
+    static class AvlNode<T> implements Node<T> {
+
+        T value;
+
+        AvlNode<T> parent;
+
+        AvlNode<T> left;
+
+        AvlNode<T> right;
+
         private byte balance;
 
-        private AvlNode(T value) {
+        private int size = 1;
+
+        AvlNode(T value) {
             this.value = value;
         }
 
-        private AvlNode(T value, AvlNode<T> parent) {
+        AvlNode(T value, AvlNode<T> parent) {
             this.value = value;
             this.parent = parent;
         }
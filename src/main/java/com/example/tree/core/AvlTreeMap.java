@@ -0,0 +1,323 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// AvlTree of keys where every node carries the value of its key as payload, so the values are read while walking
+// the tree instead of being looked up in a map kept next to it. A node keeps its key and payload for as long as the
+// key stays in the map, rebalancing moves nodes and not keys. The Tree methods see the keys, a key added through
+// them has a null payload. The set operations inherited from AvlTree keep the payloads of the nodes of this map,
+// a key taken over from the other tree gets a null payload.
+public class AvlTreeMap<K, V> extends AvlTree<K> {
+
+    public AvlTreeMap(Comparator<? super K> comparator) {
+        super(comparator);
+    }
+
+    public V get(K key) {
+        Node<K, V> node = find(key);
+        return node != null ? node.getPayload() : null;
+    }
+
+    public V getOrDefault(K key, V defaultValue) {
+        Node<K, V> node = find(key);
+        return node != null ? node.getPayload() : defaultValue;
+    }
+
+    // returns the previous value, null if the key was missing
+    public V put(K key, V value) {
+        Cursor<K> cursor = cursor();
+        cursor.insertHere(key);
+        return node(cursor.node()).setPayload(value);
+    }
+
+    // a key mapped to null is treated as missing, as for Map.putIfAbsent.
+    // Returns the current value, null if the value was put
+    public V putIfAbsent(K key, V value) {
+        Cursor<K> cursor = cursor();
+        cursor.insertHere(key);
+        Node<K, V> node = node(cursor.node());
+        V current = node.getPayload();
+        if (current == null) {
+            node.setPayload(value);
+        }
+        return current;
+    }
+
+    // a null result removes the key
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        Cursor<K> cursor = cursor();
+        boolean found = cursor.seek(key);
+        V value = function.apply(key, found ? node(cursor.node()).getPayload() : null);
+        if (value == null) {
+            if (found) {
+                cursor.removeHere();
+            }
+        } else {
+            if (!found) {
+                cursor.insertHere(key);
+            }
+            node(cursor.node()).setPayload(value);
+        }
+        return value;
+    }
+
+    // a null result leaves the map unchanged, a key mapped to null is treated as missing
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        Cursor<K> cursor = cursor();
+        boolean found = cursor.seek(key);
+        V current = found ? node(cursor.node()).getPayload() : null;
+        if (current != null) {
+            return current;
+        }
+        V value = function.apply(key);
+        if (value != null) {
+            if (!found) {
+                cursor.insertHere(key);
+            }
+            node(cursor.node()).setPayload(value);
+        }
+        return value;
+    }
+
+    // returns the removed value, null if the key was missing
+    public V getAndRemove(K key) {
+        Node<K, V> node = find(key);
+        if (node == null) {
+            return null;
+        }
+        V value = node.getPayload();
+        delete(node);
+        return value;
+    }
+
+    public void forEachEntry(BiConsumer<? super K, ? super V> action) {
+        forEach(node -> {
+            action.accept(node.getValue(), node(node).getPayload());
+        });
+    }
+
+    public void forEachEntryInRange(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+                                    BiConsumer<? super K, ? super V> action) {
+        forEachInRange(lo, loInclusive, hi, hiInclusive, node -> {
+            action.accept(node.getValue(), node(node).getPayload());
+        });
+    }
+
+    // lazy view of the nodes with keys in the range, in order. The nodes are found on iteration, so the view
+    // sees later changes to the map, but it must not be changed while an iterator is in use
+    public Iterable<Node<K, V>> entries(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+        return () -> new EntryIterator(loInclusive ? ceiling(lo) : higher(lo), hi, hiInclusive);
+    }
+
+    // the map view of a node of this map, e.g. one handed out by Trees.levels or forEach,
+    // every node of the tree comes from newNode
+    @SuppressWarnings("unchecked")
+    public Node<K, V> node(Tree.Node<K> node) {
+        return (Node<K, V>) node;
+    }
+
+    @Override
+    public Node<K, V> find(K key) {
+        return node(super.find(key));
+    }
+
+    @Override
+    public Node<K, V> select(int index) {
+        return node(super.select(index));
+    }
+
+    @Override
+    public Node<K, V> root() {
+        return node(super.root());
+    }
+
+    @Override
+    public Node<K, V> first() {
+        return node(super.first());
+    }
+
+    @Override
+    public Node<K, V> last() {
+        return node(super.last());
+    }
+
+    @Override
+    public Node<K, V> next(Tree.Node<K> node) {
+        return node(super.next(node));
+    }
+
+    @Override
+    public Node<K, V> prev(Tree.Node<K> node) {
+        return node(super.prev(node));
+    }
+
+    @Override
+    public Node<K, V> floor(K key) {
+        return node(super.floor(key));
+    }
+
+    @Override
+    public Node<K, V> ceiling(K key) {
+        return node(super.ceiling(key));
+    }
+
+    @Override
+    public Node<K, V> lower(K key) {
+        return node(super.lower(key));
+    }
+
+    @Override
+    public Node<K, V> higher(K key) {
+        return node(super.higher(key));
+    }
+
+    @Override
+    AvlNode<K> newNode(K key, AvlNode<K> parent) {
+        return new MapNode(key, parent);
+    }
+
+    // the running hash of AvlTree is the sum of the hash code of each key xor the hash code of its value, as for a Map
+    @Override
+    int hashOf(AvlNode<K> node) {
+        return Objects.hashCode(node.value) ^ Objects.hashCode(node(node).getPayload());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        AvlTreeMap<K, V> map = (AvlTreeMap<K, V>) o;
+        Node<K, V> n1 = first();
+        Node<K, V> n2 = map.first();
+        while (n1 != null) {
+            if (!Objects.equals(n1.getPayload(), n2.getPayload())) {
+                return false;
+            }
+            n1 = next(n1);
+            n2 = map.next(n2);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEachEntry((key, value) -> {
+            sb.append(key).append('=').append(value).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public interface Node<K, V> extends Tree.Node<K> {
+
+        V getPayload();
+
+        // returns the previous payload
+        V setPayload(V payload);
+
+        @Override
+        Node<K, V> getParent();
+
+        @Override
+        Node<K, V> getLeft();
+
+        @Override
+        Node<K, V> getRight();
+    }
+
+    private final class EntryIterator implements Iterator<Node<K, V>> {
+
+        private final K hi;
+
+        private final boolean hiInclusive;
+
+        private Node<K, V> next;
+
+        private EntryIterator(Node<K, V> first, K hi, boolean hiInclusive) {
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.next = inRange(first);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Node<K, V> next() {
+            Node<K, V> node = next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            next = inRange(AvlTreeMap.this.next(node));
+            return node;
+        }
+
+        private Node<K, V> inRange(Node<K, V> node) {
+            if (node == null) {
+                return null;
+            }
+            int cmp = comparator().compare(node.getValue(), hi);
+            return cmp < 0 || (cmp == 0 && hiInclusive) ? node : null;
+        }
+    }
+
+    // not static, a payload written through the node changes the running hash of its map
+    private final class MapNode extends AvlNode<K> implements Node<K, V> {
+
+        private V payload;
+
+        private MapNode(K key, AvlNode<K> parent) {
+            super(key, parent);
+        }
+
+        @Override
+        public V getPayload() {
+            return payload;
+        }
+
+        @Override
+        public V setPayload(V payload) {
+            V old = this.payload;
+            if (value == null) {
+                // a removed node is no longer part of the hash
+                this.payload = payload;
+                return old;
+            }
+            int oldHash = hashOf(this);
+            this.payload = payload;
+            rehash(oldHash, hashOf(this));
+            return old;
+        }
+
+        @Override
+        public Node<K, V> getParent() {
+            return node(parent);
+        }
+
+        @Override
+        public Node<K, V> getLeft() {
+            return node(left);
+        }
+
+        @Override
+        public Node<K, V> getRight() {
+            return node(right);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.tree.core;
+
+// every attribute is read from the snapshot the tree last published, the whole of it is the Stats attribute
+class AvlTreeStats implements TreeStatsMXBean {
+
+    private final AvlTree<?> tree;
+
+    AvlTreeStats(AvlTree<?> tree) {
+        this.tree = tree;
+    }
+
+    @Override
+    public TreeStats getStats() {
+        return tree.publishedStats();
+    }
+
+    @Override
+    public int getSize() {
+        return getStats().getSize();
+    }
+
+    @Override
+    public int getHeight() {
+        return getStats().getHeight();
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return getStats().getMaxHeight();
+    }
+
+    @Override
+    public long getComparisons() {
+        return getStats().getComparisons();
+    }
+
+    @Override
+    public long getSingleRotations() {
+        return getStats().getSingleRotations();
+    }
+
+    @Override
+    public long getDoubleRotations() {
+        return getStats().getDoubleRotations();
+    }
+
+    @Override
+    public long getInsertionFixes() {
+        return getStats().getInsertionFixes();
+    }
+
+    @Override
+    public long getInsertionFixSteps() {
+        return getStats().getInsertionFixSteps();
+    }
+
+    @Override
+    public long getDeletionFixes() {
+        return getStats().getDeletionFixes();
+    }
+
+    @Override
+    public long getDeletionFixSteps() {
+        return getStats().getDeletionFixSteps();
+    }
+
+    @Override
+    public long getSearches() {
+        return getStats().getSearches();
+    }
+
+    @Override
+    public long[] getSearchDepths() {
+        return getStats().getSearchDepths();
+    }
+
+    @Override
+    public double getAverageSearchDepth() {
+        return getStats().getAverageSearchDepth();
+    }
+
+    // carried out by the next AvlTree.publishStats on the thread that changes the tree
+    @Override
+    public void reset() {
+        tree.requestStatsReset();
+    }
+}
@@ -0,0 +1,880 @@
+package com.example.tree.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// B-tree whose pages hold up to capacity sorted keys, so that a search touches a few pages instead of a node per level.
+// Node handles show every page as the balanced binary tree that a binary search over its keys walks, with the child
+// pages hanging off its empty places. A handle is only valid until the tree is changed, getParent() returns null.
+public class BTree<T> implements Tree<T> {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    // no B-tree of at most 2^31 keys and at least two children per inner page is deeper than this
+    private static final int MAX_DEPTH = 32;
+
+    // a range of fewer than 1 / SHORT_RANGE of the keys is removed key by key instead of rebuilding the pages
+    private static final int SHORT_RANGE = 16;
+
+    private final Comparator<? super T> comparator;
+
+    private final int capacity;
+
+    // fewest keys a page other than the root may hold
+    private final int minKeys;
+
+    private Page root;
+
+    public BTree(Comparator<? super T> comparator) {
+        this(comparator, DEFAULT_CAPACITY);
+    }
+
+    public BTree(Comparator<? super T> comparator, int capacity) {
+        if (capacity < 3) {
+            throw new IllegalArgumentException("capacity < 3");
+        }
+        this.comparator = Objects.requireNonNull(comparator);
+        this.capacity = capacity;
+        this.minKeys = (capacity - 1) / 2;
+        this.root = new Page(capacity, true);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.count == 0;
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public boolean contains(T value) {
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return true;
+            }
+            if (page.children == null) {
+                return false;
+            }
+            page = page.children[-i - 1];
+        }
+    }
+
+    @Override
+    public boolean add(T value) {
+        if (root.count == capacity) {
+            Page page = new Page(capacity, false);
+            page.children[0] = root;
+            page.size = root.size;
+            split(page, 0);
+            root = page;
+        }
+        Page[] path = new Page[MAX_DEPTH];
+        int depth = 0;
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return false;
+            }
+            int pos = -i - 1;
+            if (page.children == null) {
+                insertKey(page, pos, value);
+                page.size++;
+                for (int d = 0; d < depth; d++) {
+                    path[d].size++;
+                }
+                return true;
+            }
+            if (page.children[pos].count == capacity) {
+                split(page, pos);
+                int cmp = comparator.compare(value, key(page, pos));
+                if (cmp == 0) {
+                    return false;
+                }
+                if (cmp > 0) {
+                    pos++;
+                }
+            }
+            path[depth++] = page;
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            if (page.children == null) {
+                return null;
+            }
+            page = page.children[-i - 1];
+        }
+    }
+
+    @Override
+    public int rank(T value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        Objects.checkIndex(index, size());
+        Page page = root;
+        while (page.children != null) {
+            int i = 0;
+            while (true) {
+                int childSize = page.children[i].size;
+                if (index < childSize) {
+                    page = page.children[i];
+                    break;
+                }
+                index -= childSize;
+                if (index == 0) {
+                    return handle(page, i);
+                }
+                index--;
+                i++;
+            }
+        }
+        return handle(page, index);
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        if (comparator.compare(lo, hi) > 0) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        Page[] path = new Page[MAX_DEPTH];
+        int[] slots = new int[MAX_DEPTH];
+        int depth = 0;
+        Page page = root;
+        int i;
+        while (true) {
+            i = search(page, value);
+            if (i >= 0) {
+                break;
+            }
+            if (page.children == null) {
+                return false;
+            }
+            path[depth] = page;
+            slots[depth] = -i - 1;
+            depth++;
+            page = page.children[-i - 1];
+        }
+        if (page.children != null) {
+            // the greatest key of the left subtree takes the place of the removed one
+            path[depth] = page;
+            slots[depth] = i;
+            depth++;
+            Page leaf = page.children[i];
+            while (leaf.children != null) {
+                path[depth] = leaf;
+                slots[depth] = leaf.count;
+                depth++;
+                leaf = leaf.children[leaf.count];
+            }
+            page.keys[i] = leaf.keys[leaf.count - 1];
+            i = leaf.count - 1;
+            page = leaf;
+        }
+        removeKey(page, i);
+        page.size--;
+        for (int d = 0; d < depth; d++) {
+            path[d].size--;
+        }
+        while (depth > 0 && page.count < minKeys) {
+            depth--;
+            page = path[depth];
+            fixChild(page, slots[depth]);
+        }
+        if (root.count == 0 && root.children != null) {
+            root = root.children[0];
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = new Page(capacity, true);
+    }
+
+    @Override
+    public Node<T> root() {
+        return handle(root);
+    }
+
+    @Override
+    public Node<T> first() {
+        Page page = root;
+        if (page.count == 0) {
+            return null;
+        }
+        while (page.children != null) {
+            page = page.children[0];
+        }
+        return handle(page, 0);
+    }
+
+    @Override
+    public Node<T> last() {
+        Page page = root;
+        if (page.count == 0) {
+            return null;
+        }
+        while (page.children != null) {
+            page = page.children[page.count];
+        }
+        return handle(page, page.count - 1);
+    }
+
+    // pages have no parent links, so the neighbours are found by value from the root
+    @Override
+    public Node<T> next(Node<T> node) {
+        return node != null ? higher(node.getValue()) : null;
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        return node != null ? lower(node.getValue()) : null;
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            int pos = -i - 1;
+            if (pos > 0) {
+                resultPage = page;
+                result = pos - 1;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            int pos = -i - 1;
+            if (pos < page.count) {
+                resultPage = page;
+                result = pos;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            // for an equal key the lower values are in the subtree left of it
+            int pos = i >= 0 ? i : -i - 1;
+            if (pos > 0) {
+                resultPage = page;
+                result = pos - 1;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            // for an equal key the higher values are in the subtree right of it
+            int pos = i >= 0 ? i + 1 : -i - 1;
+            if (pos < page.count) {
+                resultPage = page;
+                result = pos;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        remove(node.getValue());
+    }
+
+    // The range is found by rank, so its keys are never looked at one by one. A short range is removed key by key,
+    // otherwise the keys on both sides of it are copied out of the pages and loaded into new pages in O(n).
+    @Override
+    public boolean removeRange(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        int cmp = comparator.compare(lo, hi);
+        if (cmp > 0 || (cmp == 0 && !(loInclusive && hiInclusive))) {
+            return false;
+        }
+        int from = rank(lo, !loInclusive);
+        int to = rank(hi, hiInclusive);
+        int removed = to - from;
+        if (removed == 0) {
+            return false;
+        }
+        int size = size();
+        if (removed < size / SHORT_RANGE) {
+            // handles do not survive a removal, every key is taken again by its index
+            for (int r = 0; r < removed; r++) {
+                remove(select(from).getValue());
+            }
+            return true;
+        }
+        Object[] kept = new Object[size - removed];
+        copyKeys(root, kept, 0, from, to);
+        root = build(kept);
+        return true;
+    }
+
+    // the filter sees every node before the tree changes, the survivors are then loaded into new pages in O(n)
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        List<Object> kept = new ArrayList<>(size());
+        forEach(root, node -> {
+            if (!filter.test(node)) {
+                kept.add(node.getValue());
+            }
+        });
+        if (kept.size() == size()) {
+            return false;
+        }
+        root = build(kept.toArray());
+        return true;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        forEach(root, action);
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        forEachDescending(root, action);
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        List<Object> kept = new ArrayList<>(size());
+        forEachValue(root, value -> {
+            if (!filter.test(value)) {
+                kept.add(value);
+            }
+        });
+        if (kept.size() == size()) {
+            return false;
+        }
+        root = build(kept.toArray());
+        return true;
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        forEachValue(root, action);
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        forEachValueDescending(root, action);
+    }
+
+    // splits hand off whole subtrees of the binary view, the tree must not be changed while the spliterator is in use
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(comparator, root(), size(), node -> {
+            return ((PageNode) node).subtreeSize();
+        });
+    }
+
+    // the index of the key, or -(insertion point) - 1 if the page does not hold it
+    private int search(Page page, T value) {
+        int lo = 0;
+        int hi = page.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparator.compare(value, key(page, mid));
+            if (cmp < 0) {
+                hi = mid;
+            } else if (cmp > 0) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(T value, boolean inclusive) {
+        int rank = 0;
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            int pos = i >= 0 ? i : -i - 1;
+            rank += pos;
+            if (page.children != null) {
+                for (int c = 0; c < pos; c++) {
+                    rank += page.children[c].size;
+                }
+            }
+            if (i >= 0) {
+                if (page.children != null) {
+                    rank += page.children[i].size;
+                }
+                return inclusive ? rank + 1 : rank;
+            }
+            if (page.children == null) {
+                return rank;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    // splits the full child at the slot around its middle key, which moves up into the parent
+    private void split(Page parent, int slot) {
+        Page child = parent.children[slot];
+        int middle = capacity / 2;
+        Page right = new Page(capacity, child.children == null);
+        int rightCount = capacity - middle - 1;
+        System.arraycopy(child.keys, middle + 1, right.keys, 0, rightCount);
+        right.count = rightCount;
+        right.size = rightCount;
+        if (child.children != null) {
+            System.arraycopy(child.children, middle + 1, right.children, 0, rightCount + 1);
+            for (int c = 0; c <= rightCount; c++) {
+                right.size += right.children[c].size;
+                child.children[middle + 1 + c] = null;
+            }
+        }
+        Object middleKey = child.keys[middle];
+        for (int k = middle; k < capacity; k++) {
+            child.keys[k] = null;
+        }
+        child.count = middle;
+        child.size -= right.size + 1;
+
+        System.arraycopy(parent.keys, slot, parent.keys, slot + 1, parent.count - slot);
+        System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, parent.count - slot);
+        parent.keys[slot] = middleKey;
+        parent.children[slot + 1] = right;
+        parent.count++;
+    }
+
+    // the child at the slot has one key too few, it borrows one through the parent or is merged with a sibling
+    private void fixChild(Page parent, int slot) {
+        Page child = parent.children[slot];
+        if (slot > 0 && parent.children[slot - 1].count > minKeys) {
+            Page left = parent.children[slot - 1];
+            Page moved = left.children != null ? left.children[left.count] : null;
+            insertKey(child, 0, parent.keys[slot - 1]);
+            parent.keys[slot - 1] = left.keys[left.count - 1];
+            if (moved != null) {
+                System.arraycopy(child.children, 0, child.children, 1, child.count);
+                child.children[0] = moved;
+                left.children[left.count] = null;
+            }
+            left.keys[left.count - 1] = null;
+            left.count--;
+            int movedSize = 1 + (moved != null ? moved.size : 0);
+            left.size -= movedSize;
+            child.size += movedSize;
+        } else if (slot < parent.count && parent.children[slot + 1].count > minKeys) {
+            Page right = parent.children[slot + 1];
+            Page moved = right.children != null ? right.children[0] : null;
+            child.keys[child.count] = parent.keys[slot];
+            child.count++;
+            if (moved != null) {
+                child.children[child.count] = moved;
+                System.arraycopy(right.children, 1, right.children, 0, right.count);
+                right.children[right.count] = null;
+            }
+            parent.keys[slot] = right.keys[0];
+            removeKey(right, 0);
+            int movedSize = 1 + (moved != null ? moved.size : 0);
+            right.size -= movedSize;
+            child.size += movedSize;
+        } else if (slot > 0) {
+            merge(parent, slot - 1);
+        } else {
+            merge(parent, slot);
+        }
+    }
+
+    // moves the key at the slot and the right child of it into the left child
+    private void merge(Page parent, int slot) {
+        Page left = parent.children[slot];
+        Page right = parent.children[slot + 1];
+        left.keys[left.count] = parent.keys[slot];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+        if (left.children != null) {
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+        }
+        left.count += right.count + 1;
+        left.size += right.size + 1;
+        removeKey(parent, slot);
+        System.arraycopy(parent.children, slot + 2, parent.children, slot + 1, parent.count - slot);
+        parent.children[parent.count + 1] = null;
+    }
+
+    private void insertKey(Page page, int pos, Object key) {
+        System.arraycopy(page.keys, pos, page.keys, pos + 1, page.count - pos);
+        page.keys[pos] = key;
+        page.count++;
+    }
+
+    private void removeKey(Page page, int pos) {
+        page.count--;
+        System.arraycopy(page.keys, pos + 1, page.keys, pos, page.count - pos);
+        page.keys[page.count] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T key(Page page, int index) {
+        return (T) page.keys[index];
+    }
+
+    // fills the lowest possible number of levels, spreading the keys evenly so that every page holds enough of them
+    private Page build(Object[] keys) {
+        int height = 1;
+        while (maxKeys(height) < keys.length) {
+            height++;
+        }
+        return build(keys, 0, keys.length, height);
+    }
+
+    private Page build(Object[] keys, int from, int to, int height) {
+        int n = to - from;
+        if (height == 1) {
+            Page page = new Page(capacity, true);
+            System.arraycopy(keys, from, page.keys, 0, n);
+            page.count = n;
+            page.size = n;
+            return page;
+        }
+        long childMax = maxKeys(height - 1);
+        int children = (int) Math.max(2, (n + 1 + childMax) / (childMax + 1));
+        Page page = new Page(capacity, false);
+        int childKeys = n - (children - 1);
+        int start = from;
+        for (int c = 0; c < children; c++) {
+            int count = childKeys / children + (c < childKeys % children ? 1 : 0);
+            page.children[c] = build(keys, start, start + count, height - 1);
+            start += count;
+            if (c < children - 1) {
+                page.keys[c] = keys[start];
+                start++;
+            }
+        }
+        page.count = children - 1;
+        page.size = n;
+        return page;
+    }
+
+    // keys held by a full tree of the given height, saturated at Long.MAX_VALUE
+    private long maxKeys(int height) {
+        long keys = 1;
+        for (int h = 0; h < height; h++) {
+            if (keys > Long.MAX_VALUE / (capacity + 1)) {
+                return Long.MAX_VALUE;
+            }
+            keys *= capacity + 1;
+        }
+        return keys - 1;
+    }
+
+    // copies the keys of the page with an index outside [from, to) to the array, the page starts at the given index,
+    // pages that lie wholly inside the range are skipped. Returns the index after the page
+    private int copyKeys(Page page, Object[] kept, int index, int from, int to) {
+        if (index >= from && index + page.size <= to) {
+            return index + page.size;
+        }
+        for (int i = 0; i < page.count; i++) {
+            if (page.children != null) {
+                index = copyKeys(page.children[i], kept, index, from, to);
+            }
+            if (index < from) {
+                kept[index] = page.keys[i];
+            } else if (index >= to) {
+                kept[index - (to - from)] = page.keys[i];
+            }
+            index++;
+        }
+        if (page.children != null) {
+            index = copyKeys(page.children[page.count], kept, index, from, to);
+        }
+        return index;
+    }
+
+    private void forEach(Page page, Consumer<? super Node<T>> action) {
+        for (int i = 0; i < page.count; i++) {
+            if (page.children != null) {
+                forEach(page.children[i], action);
+            }
+            action.accept(handle(page, i));
+        }
+        if (page.children != null) {
+            forEach(page.children[page.count], action);
+        }
+    }
+
+    private void forEachDescending(Page page, Consumer<? super Node<T>> action) {
+        if (page.children != null) {
+            forEachDescending(page.children[page.count], action);
+        }
+        for (int i = page.count - 1; i >= 0; i--) {
+            action.accept(handle(page, i));
+            if (page.children != null) {
+                forEachDescending(page.children[i], action);
+            }
+        }
+    }
+
+    private void forEachValue(Page page, Consumer<? super T> action) {
+        for (int i = 0; i < page.count; i++) {
+            if (page.children != null) {
+                forEachValue(page.children[i], action);
+            }
+            action.accept(key(page, i));
+        }
+        if (page.children != null) {
+            forEachValue(page.children[page.count], action);
+        }
+    }
+
+    private void forEachValueDescending(Page page, Consumer<? super T> action) {
+        if (page.children != null) {
+            forEachValueDescending(page.children[page.count], action);
+        }
+        for (int i = page.count - 1; i >= 0; i--) {
+            action.accept(key(page, i));
+            if (page.children != null) {
+                forEachValueDescending(page.children[i], action);
+            }
+        }
+    }
+
+    private Node<T> handle(Page page) {
+        return page.count > 0 ? new PageNode(page, 0, page.count) : null;
+    }
+
+    // the handle of the key at the index, with the key range a binary search over the page narrows down to it
+    private Node<T> handle(Page page, int index) {
+        int lo = 0;
+        int hi = page.count;
+        while (true) {
+            int mid = (lo + hi) >>> 1;
+            if (index < mid) {
+                hi = mid;
+            } else if (index > mid) {
+                lo = mid + 1;
+            } else {
+                return new PageNode(page, lo, hi);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        @SuppressWarnings("unchecked")
+        BTree<T> tree = (BTree<T>) o;
+        if (size() != tree.size()) {
+            return false;
+        }
+        List<T> values = new ArrayList<>(size());
+        forEachValue(values::add);
+        int[] index = {0};
+        boolean[] equal = {true};
+        tree.forEachValue(value -> {
+            if (equal[0] && !Objects.equals(values.get(index[0]++), value)) {
+                equal[0] = false;
+            }
+        });
+        return equal[0];
+    }
+
+    // the sum of the hash codes of the values, as for a Set
+    @Override
+    public int hashCode() {
+        int[] result = {0};
+        forEachValue(value -> {
+            result[0] += Objects.hashCode(value);
+        });
+        return result[0];
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node -> {
+            sb.append(node).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static final class Page {
+
+        private final Object[] keys;
+
+        // null for leaves
+        private final Page[] children;
+
+        private int count;
+
+        // number of keys in the subtree
+        private int size;
+
+        private Page(int capacity, boolean leaf) {
+            keys = new Object[capacity];
+            children = leaf ? null : new Page[capacity + 1];
+        }
+    }
+
+    // the key in the middle of the range [lo, hi) of a page, as the node of a binary search over that range
+    private class PageNode implements Node<T> {
+
+        private final Page page;
+
+        private final int lo;
+
+        private final int hi;
+
+        private final int index;
+
+        private PageNode(Page page, int lo, int hi) {
+            this.page = page;
+            this.lo = lo;
+            this.hi = hi;
+            this.index = (lo + hi) >>> 1;
+        }
+
+        private int subtreeSize() {
+            int size = hi - lo;
+            if (page.children != null) {
+                for (int c = lo; c <= hi; c++) {
+                    size += page.children[c].size;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public T getValue() {
+            return key(page, index);
+        }
+
+        @Override
+        public Node<T> getParent() {
+            return null;
+        }
+
+        @Override
+        public Node<T> getLeft() {
+            if (lo < index) {
+                return new PageNode(page, lo, index);
+            }
+            return page.children != null ? handle(page.children[index]) : null;
+        }
+
+        @Override
+        public Node<T> getRight() {
+            if (index + 1 < hi) {
+                return new PageNode(page, index + 1, hi);
+            }
+            return page.children != null ? handle(page.children[index + 1]) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            @SuppressWarnings("unchecked")
+            PageNode node = (PageNode) o;
+            return page == node.page && lo == node.lo && hi == node.hi;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(page) + index;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(getValue());
+            if (getLeft() != null) {
+                sb.append(",left");
+            }
+            if (getRight() != null) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.example.tree.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// AVL tree whose nodes have no parent links, which takes a node from 40 down to 32 bytes with compressed oops.
+// add and remove rebalance on the way back up the recursion, traversals keep their path on a stack.
+// Without parent links getParent() always returns null, and next and prev find the neighbour by value.
+public class CompactAvlTree<T> implements Tree<T> {
+
+    private final Comparator<? super T> comparator;
+
+    private CompactNode<T> root;
+
+    public CompactAvlTree(Comparator<? super T> comparator) {
+        this.comparator = Objects.requireNonNull(comparator);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public boolean add(T value) {
+        int size = size(root);
+        root = insert(root, value);
+        return size(root) != size;
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        CompactNode<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int rank(T value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        Objects.checkIndex(index, size());
+        CompactNode<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        if (comparator.compare(lo, hi) > 0) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        int size = size(root);
+        root = delete(root, value);
+        return size(root) != size;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public Node<T> root() {
+        return root;
+    }
+
+    @Override
+    public Node<T> first() {
+        CompactNode<T> node = root;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public Node<T> last() {
+        CompactNode<T> node = root;
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    // without parent links the neighbours are found by value from the root
+    @Override
+    public Node<T> next(Node<T> node) {
+        return node != null ? higher(node.getValue()) : null;
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        return node != null ? lower(node.getValue()) : null;
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        CompactNode<T> node = root;
+        CompactNode<T> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        CompactNode<T> node = root;
+        CompactNode<T> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                result = node;
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        CompactNode<T> node = root;
+        CompactNode<T> result = null;
+        while (node != null) {
+            if (comparator.compare(value, node.value) > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        CompactNode<T> node = root;
+        CompactNode<T> result = null;
+        while (node != null) {
+            if (comparator.compare(value, node.value) < 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        T value = node.getValue();
+        if (value != null) {
+            remove(value);
+        }
+    }
+
+    // the filter is tested on every node first, many matches are removed by relinking the survivors in O(n)
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        CompactNode<T> node = root;
+        int size = size(node);
+        List<CompactNode<T>> removed = new ArrayList<>();
+        forEach(node, false, n -> {
+            if (filter.test(n)) {
+                removed.add(n);
+            }
+        });
+        if (removed.isEmpty()) {
+            return false;
+        }
+        if ((long) removed.size() * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (CompactNode<T> n : removed) {
+                remove(n.value);
+            }
+            return true;
+        }
+        for (CompactNode<T> n : removed) {
+            n.value = null;
+        }
+        List<CompactNode<T>> kept = new ArrayList<>(size - removed.size());
+        forEach(node, false, n -> {
+            if (n.value != null) {
+                kept.add(n);
+            }
+        });
+        for (CompactNode<T> n : removed) {
+            n.left = null;
+            n.right = null;
+        }
+        root = link(kept, 0, kept.size());
+        return true;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        forEach(root, false, action);
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        forEach(root, true, action);
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        return removeIf(node -> {
+            return filter.test(node.getValue());
+        });
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        forEach(root, false, node -> {
+            action.accept(node.value);
+        });
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        forEach(root, true, node -> {
+            action.accept(node.value);
+        });
+    }
+
+    // splits hand off whole subtrees, the tree must not be changed while the spliterator is in use
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(comparator, root, size(), node -> {
+            return ((CompactNode<T>) node).size;
+        });
+    }
+
+    private CompactNode<T> insert(CompactNode<T> node, T value) {
+        if (node == null) {
+            return new CompactNode<>(value);
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            node.left = insert(node.left, value);
+        } else if (cmp > 0) {
+            node.right = insert(node.right, value);
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    // the successor node takes the place of a deleted inner node, so node handles stay attached to their values
+    private CompactNode<T> delete(CompactNode<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            node.left = delete(node.left, value);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, value);
+        } else {
+            CompactNode<T> left = node.left;
+            CompactNode<T> right = node.right;
+            node.value = null;
+            node.left = null;
+            node.right = null;
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+            CompactNode<T> successor = right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteFirst(right);
+            successor.left = left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private static <T> CompactNode<T> deleteFirst(CompactNode<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteFirst(node.left);
+        return balance(node);
+    }
+
+    // the heights of the children differ by at most 2
+    private static <T> CompactNode<T> balance(CompactNode<T> node) {
+        int leftHeight = height(node.left);
+        int rightHeight = height(node.right);
+        if (leftHeight > rightHeight + 1) {
+            CompactNode<T> left = node.left;
+            if (height(left.left) < height(left.right)) {
+                node.left = rotateLeft(left);
+            }
+            return rotateRight(node);
+        }
+        if (rightHeight > leftHeight + 1) {
+            CompactNode<T> right = node.right;
+            if (height(right.right) < height(right.left)) {
+                node.right = rotateRight(right);
+            }
+            return rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    private static <T> CompactNode<T> rotateLeft(CompactNode<T> p) {
+        CompactNode<T> r = p.right;
+        p.right = r.left;
+        r.left = p;
+        update(p);
+        update(r);
+        return r;
+    }
+
+    private static <T> CompactNode<T> rotateRight(CompactNode<T> p) {
+        CompactNode<T> l = p.left;
+        p.left = l.right;
+        l.right = p;
+        update(p);
+        update(l);
+        return l;
+    }
+
+    private static void update(CompactNode<?> node) {
+        node.height = (byte) (Math.max(height(node.left), height(node.right)) + 1);
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    // links the sorted nodes into a balanced subtree
+    private static <T> CompactNode<T> link(List<CompactNode<T>> nodes, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        CompactNode<T> node = nodes.get(middle);
+        node.left = link(nodes, from, middle);
+        node.right = link(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(T value, boolean inclusive) {
+        int rank = 0;
+        CompactNode<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                rank += size(node.left);
+                return inclusive ? rank + 1 : rank;
+            }
+        }
+        return rank;
+    }
+
+    private static <T> void forEach(CompactNode<T> node, boolean descending,
+                                    Consumer<? super CompactNode<T>> action) {
+        Deque<CompactNode<T>> stack = new ArrayDeque<>();
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = descending ? node.right : node.left;
+            }
+            node = stack.pop();
+            action.accept(node);
+            node = descending ? node.left : node.right;
+        }
+    }
+
+    private static int height(CompactNode<?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static int size(CompactNode<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        @SuppressWarnings("unchecked")
+        CompactAvlTree<T> tree = (CompactAvlTree<T>) o;
+        if (size() != tree.size()) {
+            return false;
+        }
+        Deque<CompactNode<T>> stack = new ArrayDeque<>();
+        Deque<CompactNode<T>> otherStack = new ArrayDeque<>();
+        CompactNode<T> node = root;
+        CompactNode<T> other = tree.root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            while (other != null) {
+                otherStack.push(other);
+                other = other.left;
+            }
+            node = stack.pop();
+            other = otherStack.pop();
+            if (!Objects.equals(node.value, other.value)) {
+                return false;
+            }
+            node = node.right;
+            other = other.right;
+        }
+        return true;
+    }
+
+    // the sum of the hash codes of the values, as for a Set
+    @Override
+    public int hashCode() {
+        int[] result = {0};
+        forEach(root, false, node -> {
+            result[0] += node.hashCode();
+        });
+        return result[0];
+    }
+
+    @Override
+    public String toString() {
+        CompactNode<T> node = root;
+        if (node == null) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node, false, n -> {
+            sb.append(n).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static final class CompactNode<T> implements Node<T> {
+
+        private T value;
+
+        private CompactNode<T> left;
+
+        private CompactNode<T> right;
+
+        private int size = 1;
+
+        private byte height = 1;
+
+        private CompactNode(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public Node<T> getParent() {
+            return null;
+        }
+
+        @Override
+        public Node<T> getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node<T> getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CompactNode<?> node = (CompactNode<?>) o;
+            return Objects.equals(value, node.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value != null ? value.hashCode() : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(value);
+            if (left != null) {
+                sb.append(",left");
+            }
+            if (right != null) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
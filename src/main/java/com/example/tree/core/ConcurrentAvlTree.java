@@ -0,0 +1,516 @@
+package com.example.tree.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Point and range reads walk the tree under an optimistic stamp and retry when a writer got in between,
+// falling back to the read lock after a few attempts. Writers are serialized by the write lock.
+public class ConcurrentAvlTree<T> implements Tree<T> {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    // no consistent AVL tree of at most 2^31 nodes is higher than this
+    private static final int MAX_HEIGHT = 64;
+
+    private static final int FIND = 0;
+    private static final int FLOOR = 1;
+    private static final int CEILING = 2;
+    private static final int LOWER = 3;
+    private static final int HIGHER = 4;
+
+    private static final RuntimeException INCONSISTENT = new IllegalStateException("inconsistent read") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private final AvlTree<T> tree;
+
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentAvlTree(Comparator<? super T> comparator) {
+        tree = new AvlTree<>(comparator);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int size = tree.size();
+            if (lock.validate(stamp)) {
+                return size;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return search(value, FIND) != null;
+    }
+
+    @Override
+    public boolean add(T value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.add(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        return search(value, FIND);
+    }
+
+    @Override
+    public int rank(T value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.rank(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        long stamp = lock.readLock();
+        try {
+            return tree.select(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        long stamp = lock.readLock();
+        try {
+            return tree.countBetween(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            tree.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> root() {
+        long stamp = lock.readLock();
+        try {
+            return tree.root();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> first() {
+        long stamp = lock.readLock();
+        try {
+            return tree.first();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> last() {
+        long stamp = lock.readLock();
+        try {
+            return tree.last();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> next(Node<T> node) {
+        long stamp = lock.readLock();
+        try {
+            return tree.next(node);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        long stamp = lock.readLock();
+        try {
+            return tree.prev(node);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        return search(value, FLOOR);
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        return search(value, CEILING);
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        return search(value, LOWER);
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        return search(value, HIGHER);
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        long stamp = lock.writeLock();
+        try {
+            tree.delete(node);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.removeIf(filter);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        long stamp = lock.readLock();
+        try {
+            tree.forEach(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        long stamp = lock.readLock();
+        try {
+            tree.forEachDescending(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.removeByValueIf(filter);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        long stamp = lock.readLock();
+        try {
+            tree.forEachValue(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        long stamp = lock.readLock();
+        try {
+            tree.forEachValueDescending(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEachInRange(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                               Consumer<? super Node<T>> action) {
+        long stamp = lock.readLock();
+        try {
+            tree.forEachInRange(lo, loInclusive, hi, hiInclusive, action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEachValueInRange(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                                    Consumer<? super T> action) {
+        List<T> values = new ArrayList<>();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                values.clear();
+                try {
+                    collect(lo, loInclusive, hi, hiInclusive, values);
+                    if (lock.validate(stamp)) {
+                        values.forEach(action);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.readLock();
+        try {
+            tree.forEachValueInRange(lo, loInclusive, hi, hiInclusive, action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the values are copied under the read lock, so writers are not held up while the stream runs.
+    // The copy does not report SORTED, its comparator could not be told apart from natural ordering.
+    @Override
+    public Spliterator<T> spliterator() {
+        long stamp = lock.readLock();
+        try {
+            Object[] values = new Object[tree.size()];
+            int[] count = new int[1];
+            tree.forEachValue(value -> {
+                values[count[0]++] = value;
+            });
+            return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.DISTINCT
+                    | Spliterator.IMMUTABLE);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeRange(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        long stamp = lock.writeLock();
+        try {
+            boolean changed = tree.removeRange(lo, loInclusive, hi, hiInclusive);
+            // a bulk operation may leave the hash stale, it is recomputed here so that hashCode() only reads
+            tree.hashCode();
+            return changed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private Node<T> search(T value, int mode) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    Node<T> node = descend(value, mode);
+                    if (lock.validate(stamp)) {
+                        return node;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.readLock();
+        try {
+            return descend(value, mode);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the walks below may see a tree in the middle of a rotation, so they are bounded and validated by the caller
+    private Node<T> descend(T value, int mode) {
+        Comparator<? super T> comparator = tree.comparator();
+        Node<T> node = tree.root();
+        Node<T> result = null;
+        for (int steps = 0; node != null; steps++) {
+            if (steps > MAX_HEIGHT) {
+                throw INCONSISTENT;
+            }
+            int cmp = comparator.compare(value, node.getValue());
+            if (cmp == 0 && mode <= CEILING) {
+                return node;
+            }
+            boolean goLeft = mode == LOWER ? cmp <= 0 : cmp < 0;
+            if (goLeft) {
+                if (mode == CEILING || mode == HIGHER) {
+                    result = node;
+                }
+                node = node.getLeft();
+            } else {
+                if (mode == FLOOR || mode == LOWER) {
+                    result = node;
+                }
+                node = node.getRight();
+            }
+        }
+        return result;
+    }
+
+    private void collect(T lo, boolean loInclusive, T hi, boolean hiInclusive, List<T> values) {
+        Comparator<? super T> comparator = tree.comparator();
+        int limit = tree.size();
+        Node<T> node = descend(lo, loInclusive ? CEILING : HIGHER);
+        while (node != null) {
+            T value = node.getValue();
+            int cmp = comparator.compare(value, hi);
+            if (cmp > 0 || (cmp == 0 && !hiInclusive)) {
+                break;
+            }
+            if (values.size() == limit) {
+                throw INCONSISTENT;
+            }
+            values.add(value);
+            node = successor(node);
+        }
+    }
+
+    private Node<T> successor(Node<T> node) {
+        int steps = 0;
+        Node<T> right = node.getRight();
+        if (right != null) {
+            node = right;
+            for (Node<T> left = node.getLeft(); left != null; left = node.getLeft()) {
+                if (++steps > MAX_HEIGHT) {
+                    throw INCONSISTENT;
+                }
+                node = left;
+            }
+            return node;
+        }
+        Node<T> parent = node.getParent();
+        while (parent != null && node == parent.getRight()) {
+            if (++steps > MAX_HEIGHT) {
+                throw INCONSISTENT;
+            }
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    // Holds one read lock at a time: readers queue behind a waiting writer, so a.equals(b) holding a's lock while
+    // b.equals(a) holds b's could each wait for the other. This side is copied first and compared with the other.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConcurrentAvlTree<?> that = (ConcurrentAvlTree<?>) o;
+        Object[] values;
+        int hash;
+        long stamp = lock.readLock();
+        try {
+            values = new Object[tree.size()];
+            int[] count = new int[1];
+            tree.forEachValue(value -> {
+                values[count[0]++] = value;
+            });
+            hash = tree.hashCode();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        long thatStamp = that.lock.readLock();
+        try {
+            return hash == that.tree.hashCode() && holds(that.tree, values);
+        } finally {
+            that.lock.unlockRead(thatStamp);
+        }
+    }
+
+    private static <U> boolean holds(AvlTree<U> tree, Object[] values) {
+        if (tree.size() != values.length) {
+            return false;
+        }
+        int index = 0;
+        for (Node<U> node = tree.first(); node != null; node = tree.next(node)) {
+            if (!Objects.equals(values[index++], node.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the writers leave the hash of the tree up to date, so reading it does not write
+    @Override
+    public int hashCode() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int hash = tree.hashCode();
+            if (lock.validate(stamp)) {
+                return hash;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.hashCode();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long stamp = lock.readLock();
+        try {
+            return tree.toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
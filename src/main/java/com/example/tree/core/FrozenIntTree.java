@@ -0,0 +1,153 @@
+package com.example.tree.core;
+
+import java.util.OptionalInt;
+import java.util.function.IntConsumer;
+
+// FrozenTree over an int array, a cache line holds four levels of the descendants of a node
+public final class FrozenIntTree {
+
+    // values[0] is unused
+    private final int[] values;
+
+    // position of values[k] in the sorted order
+    private final int[] ranks;
+
+    private final int size;
+
+    FrozenIntTree(IntTree tree) {
+        this.size = tree.size();
+        int[] sorted = new int[size];
+        int[] count = {0};
+        tree.forEachValue(value -> {
+            sorted[count[0]++] = value;
+        });
+        this.values = new int[size + 1];
+        this.ranks = new int[size + 1];
+        fill(sorted, 0, 1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int value) {
+        int k = lowerBound(value);
+        return k != 0 && values[k] == value;
+    }
+
+    // number of values less than the given one
+    public int rank(int value) {
+        int k = lowerBound(value);
+        return k != 0 ? ranks[k] : size;
+    }
+
+    public OptionalInt floor(int value) {
+        int k = lowerBound(value);
+        if (k != 0 && values[k] == value) {
+            return OptionalInt.of(value);
+        }
+        return valueOf(predecessor(k));
+    }
+
+    public OptionalInt ceiling(int value) {
+        return valueOf(lowerBound(value));
+    }
+
+    public OptionalInt lower(int value) {
+        return valueOf(predecessor(lowerBound(value)));
+    }
+
+    public OptionalInt higher(int value) {
+        return valueOf(upperBound(value));
+    }
+
+    public void forEachValue(IntConsumer action) {
+        forEachValue(1, action);
+    }
+
+    // index of the least value not less than the given one, 0 if there is none
+    private int lowerBound(int value) {
+        int[] values = this.values;
+        int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (values[k] < value ? 1 : 0);
+        }
+        // the last step to the right was taken from the answer, the left steps after it are dropped
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    // index of the least value greater than the given one, 0 if there is none
+    private int upperBound(int value) {
+        int[] values = this.values;
+        int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (values[k] <= value ? 1 : 0);
+        }
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    // index of the value before values[k], or of the greatest value if k is 0
+    private int predecessor(int k) {
+        if (size == 0) {
+            return 0;
+        }
+        if (k == 0) {
+            return rightmost(1);
+        }
+        if (2 * k <= size) {
+            return rightmost(2 * k);
+        }
+        // up through the left children, the parent of the first right child is the predecessor
+        return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    private int rightmost(int k) {
+        while (2 * k + 1 <= size) {
+            k = 2 * k + 1;
+        }
+        return k;
+    }
+
+    // lays out the sorted values in-order over the implicit tree at k and returns the next sorted index
+    private int fill(int[] sorted, int i, int k) {
+        if (k <= size) {
+            i = fill(sorted, i, 2 * k);
+            values[k] = sorted[i];
+            ranks[k] = i;
+            i = fill(sorted, i + 1, 2 * k + 1);
+        }
+        return i;
+    }
+
+    private void forEachValue(int k, IntConsumer action) {
+        if (k <= size) {
+            forEachValue(2 * k, action);
+            action.accept(values[k]);
+            forEachValue(2 * k + 1, action);
+        }
+    }
+
+    private OptionalInt valueOf(int k) {
+        return k != 0 ? OptionalInt.of(values[k]) : OptionalInt.empty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEachValue(value -> {
+            sb.append(value).append(',').append(' ');
+        });
+        if (size > 0) {
+            sb.setLength(sb.length() - 2);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+// immutable copy of a tree in Eytzinger order: the children of index k are at 2k and 2k + 1 of one array, so the
+// first levels of every search share a few cache lines and the next level is always at a computable address.
+// A search step turns the comparison into the next index instead of branching on it.
+public final class FrozenTree<T> {
+
+    private final Comparator<? super T> comparator;
+
+    // values[0] is unused
+    private final Object[] values;
+
+    // position of values[k] in the sorted order
+    private final int[] ranks;
+
+    private final int size;
+
+    FrozenTree(Tree<T> tree) {
+        this.comparator = tree.comparator();
+        this.size = tree.size();
+        Object[] sorted = new Object[size];
+        int[] count = {0};
+        tree.forEachValue(value -> {
+            sorted[count[0]++] = value;
+        });
+        this.values = new Object[size + 1];
+        this.ranks = new int[size + 1];
+        fill(sorted, 0, 1);
+    }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(T value) {
+        int k = lowerBound(value);
+        return k != 0 && comparator.compare(value(k), value) == 0;
+    }
+
+    // number of values less than the given one
+    public int rank(T value) {
+        int k = lowerBound(value);
+        return k != 0 ? ranks[k] : size;
+    }
+
+    public T floor(T value) {
+        int k = lowerBound(value);
+        if (k != 0 && comparator.compare(value(k), value) == 0) {
+            return value(k);
+        }
+        return valueOrNull(predecessor(k));
+    }
+
+    public T ceiling(T value) {
+        return valueOrNull(lowerBound(value));
+    }
+
+    public T lower(T value) {
+        return valueOrNull(predecessor(lowerBound(value)));
+    }
+
+    public T higher(T value) {
+        return valueOrNull(upperBound(value));
+    }
+
+    public void forEachValue(Consumer<? super T> action) {
+        forEachValue(1, action);
+    }
+
+    // index of the least value not less than the given one, 0 if there is none
+    private int lowerBound(T value) {
+        Object[] values = this.values;
+        int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (comparator.compare(value(values, k), value) >>> 31);
+        }
+        // the last step to the right was taken from the answer, the left steps after it are dropped
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    // index of the least value greater than the given one, 0 if there is none
+    private int upperBound(T value) {
+        Object[] values = this.values;
+        int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + 1 - (comparator.compare(value, value(values, k)) >>> 31);
+        }
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    // index of the value before values[k], or of the greatest value if k is 0
+    private int predecessor(int k) {
+        if (size == 0) {
+            return 0;
+        }
+        if (k == 0) {
+            return rightmost(1);
+        }
+        if (2 * k <= size) {
+            return rightmost(2 * k);
+        }
+        // up through the left children, the parent of the first right child is the predecessor
+        return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    private int rightmost(int k) {
+        while (2 * k + 1 <= size) {
+            k = 2 * k + 1;
+        }
+        return k;
+    }
+
+    // lays out the sorted values in-order over the implicit tree at k and returns the next sorted index
+    private int fill(Object[] sorted, int i, int k) {
+        if (k <= size) {
+            i = fill(sorted, i, 2 * k);
+            values[k] = sorted[i];
+            ranks[k] = i;
+            i = fill(sorted, i + 1, 2 * k + 1);
+        }
+        return i;
+    }
+
+    private void forEachValue(int k, Consumer<? super T> action) {
+        if (k <= size) {
+            forEachValue(2 * k, action);
+            action.accept(value(k));
+            forEachValue(2 * k + 1, action);
+        }
+    }
+
+    private T valueOrNull(int k) {
+        return k != 0 ? value(k) : null;
+    }
+
+    private T value(int k) {
+        return value(values, k);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T value(Object[] values, int k) {
+        return (T) values[k];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEachValue(value -> {
+            sb.append(value).append(',').append(' ');
+        });
+        if (size > 0) {
+            sb.setLength(sb.length() - 2);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
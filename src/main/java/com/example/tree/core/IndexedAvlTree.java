@@ -0,0 +1,764 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// AVL tree over nodes addressed by int ids, the storage of the node fields is left to subclasses
+abstract class IndexedAvlTree<T> implements Tree<T> {
+
+    static final int NIL = 0;
+
+    private final Comparator<? super T> comparator;
+
+    IndexedAvlTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    abstract int rootNode();
+
+    abstract void setRootNode(int node);
+
+    abstract int left(int node);
+
+    abstract void setLeft(int node, int left);
+
+    abstract int right(int node);
+
+    abstract void setRight(int node, int right);
+
+    abstract int parent(int node);
+
+    abstract void setParent(int node, int parent);
+
+    abstract int balance(int node);
+
+    abstract void setBalance(int node, int balance);
+
+    // zero for freed nodes
+    abstract int size(int node);
+
+    abstract void setSize(int node, int size);
+
+    abstract T value(int node);
+
+    abstract int allocate(T value, int parent);
+
+    abstract void free(int node);
+
+    abstract void reset();
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return rootNode() == NIL;
+    }
+
+    @Override
+    public int size() {
+        return sizeOf(rootNode());
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return search(value) != NIL;
+    }
+
+    @Override
+    public boolean add(T value) {
+        int node = rootNode();
+        if (node == NIL) {
+            setRootNode(allocate(value, NIL));
+            return true;
+        }
+        int parent;
+        int cmp;
+        do {
+            parent = node;
+            cmp = comparator.compare(value, value(node));
+            if (cmp < 0) {
+                node = left(node);
+            } else if (cmp > 0) {
+                node = right(node);
+            } else {
+                return false;
+            }
+        } while (node != NIL);
+        int newNode = allocate(value, parent);
+        if (cmp < 0) {
+            setLeft(parent, newNode);
+            setBalance(parent, balance(parent) - 1);
+        } else {
+            setRight(parent, newNode);
+            setBalance(parent, balance(parent) + 1);
+        }
+        for (int p = parent; p != NIL; p = parent(p)) {
+            setSize(p, size(p) + 1);
+        }
+        fixAfterInsertion(parent);
+        return true;
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        return handle(search(value));
+    }
+
+    @Override
+    public int rank(T value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        Objects.checkIndex(index, size());
+        int node = rootNode();
+        while (true) {
+            int leftSize = sizeOf(left(node));
+            if (index < leftSize) {
+                node = left(node);
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = right(node);
+            } else {
+                return handle(node);
+            }
+        }
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        if (comparator.compare(lo, hi) > 0) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        int node = search(value);
+        if (node != NIL) {
+            delete(node);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public Node<T> root() {
+        return handle(rootNode());
+    }
+
+    @Override
+    public Node<T> first() {
+        return handle(firstNode());
+    }
+
+    @Override
+    public Node<T> last() {
+        return handle(lastNode());
+    }
+
+    @Override
+    public Node<T> next(Node<T> node) {
+        return node != null ? handle(successor(id(node))) : null;
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        return node != null ? handle(predecessor(id(node))) : null;
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        int node = rootNode();
+        int result = NIL;
+        while (node != NIL) {
+            int cmp = comparator.compare(value, value(node));
+            if (cmp < 0) {
+                node = left(node);
+            } else if (cmp > 0) {
+                result = node;
+                node = right(node);
+            } else {
+                return handle(node);
+            }
+        }
+        return handle(result);
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        int node = rootNode();
+        int result = NIL;
+        while (node != NIL) {
+            int cmp = comparator.compare(value, value(node));
+            if (cmp < 0) {
+                result = node;
+                node = left(node);
+            } else if (cmp > 0) {
+                node = right(node);
+            } else {
+                return handle(node);
+            }
+        }
+        return handle(result);
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        int node = rootNode();
+        int result = NIL;
+        while (node != NIL) {
+            if (comparator.compare(value, value(node)) > 0) {
+                result = node;
+                node = right(node);
+            } else {
+                node = left(node);
+            }
+        }
+        return handle(result);
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        int node = rootNode();
+        int result = NIL;
+        while (node != NIL) {
+            if (comparator.compare(value, value(node)) < 0) {
+                result = node;
+                node = left(node);
+            } else {
+                node = right(node);
+            }
+        }
+        return handle(result);
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        delete(id(node));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        boolean removed = false;
+        int node = firstNode();
+        while (node != NIL) {
+            int next = successor(node);
+            if (filter.test(handle(node))) {
+                removed = true;
+                delete(node);
+            }
+            node = next;
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        for (int node = firstNode(); node != NIL; node = successor(node)) {
+            action.accept(handle(node));
+        }
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        for (int node = lastNode(); node != NIL; node = predecessor(node)) {
+            action.accept(handle(node));
+        }
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        boolean removed = false;
+        int node = firstNode();
+        while (node != NIL) {
+            int next = successor(node);
+            if (filter.test(value(node))) {
+                removed = true;
+                delete(node);
+            }
+            node = next;
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        for (int node = firstNode(); node != NIL; node = successor(node)) {
+            action.accept(value(node));
+        }
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        for (int node = lastNode(); node != NIL; node = predecessor(node)) {
+            action.accept(value(node));
+        }
+    }
+
+    // splits hand off whole subtrees, the tree must not be changed while the spliterator is in use
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator<>(comparator, root(), size(), node -> {
+            return size(id(node));
+        });
+    }
+
+    private int search(T value) {
+        int node = rootNode();
+        while (node != NIL) {
+            int cmp = comparator.compare(value, value(node));
+            if (cmp < 0) {
+                node = left(node);
+            } else if (cmp > 0) {
+                node = right(node);
+            } else {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(T value, boolean inclusive) {
+        int rank = 0;
+        int node = rootNode();
+        while (node != NIL) {
+            int cmp = comparator.compare(value, value(node));
+            if (cmp < 0) {
+                node = left(node);
+            } else if (cmp > 0) {
+                rank += sizeOf(left(node)) + 1;
+                node = right(node);
+            } else {
+                rank += sizeOf(left(node));
+                return inclusive ? rank + 1 : rank;
+            }
+        }
+        return rank;
+    }
+
+    private int firstNode() {
+        int node = rootNode();
+        if (node != NIL) {
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+        }
+        return node;
+    }
+
+    private int lastNode() {
+        int node = rootNode();
+        if (node != NIL) {
+            while (right(node) != NIL) {
+                node = right(node);
+            }
+        }
+        return node;
+    }
+
+    private int successor(int node) {
+        if (right(node) != NIL) {
+            node = right(node);
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+            return node;
+        }
+        int parent = parent(node);
+        while (parent != NIL && node == right(parent)) {
+            node = parent;
+            parent = parent(parent);
+        }
+        return parent;
+    }
+
+    private int predecessor(int node) {
+        if (left(node) != NIL) {
+            node = left(node);
+            while (right(node) != NIL) {
+                node = right(node);
+            }
+            return node;
+        }
+        int parent = parent(node);
+        while (parent != NIL && node == left(parent)) {
+            node = parent;
+            parent = parent(parent);
+        }
+        return parent;
+    }
+
+    private void delete(int node) {
+        if (size(node) == 0) {
+            return;
+        }
+        if (left(node) != NIL && right(node) != NIL) {
+            int successor = right(node);
+            while (left(successor) != NIL) {
+                successor = left(successor);
+            }
+            swapWithSuccessor(node, successor);
+        }
+        int replacement = left(node) != NIL
+                ? left(node)
+                : right(node);
+        int parent = parent(node);
+        for (int p = parent; p != NIL; p = parent(p)) {
+            setSize(p, size(p) - 1);
+        }
+        if (replacement != NIL) {
+            setParent(replacement, parent);
+        }
+        boolean needFix;
+        if (parent == NIL) {
+            setRootNode(replacement);
+            needFix = false;
+        } else if (node == left(parent)) {
+            setLeft(parent, replacement);
+            setBalance(parent, balance(parent) + 1);
+            needFix = balance(parent) != 1;
+        } else {
+            setRight(parent, replacement);
+            setBalance(parent, balance(parent) - 1);
+            needFix = balance(parent) != -1;
+        }
+        free(node);
+        if (needFix) {
+            fixAfterDeletion(parent);
+        }
+    }
+
+    private void swapWithSuccessor(int node, int successor) {
+        int parent = parent(node);
+        int successorParent = parent(successor);
+        int successorRight = right(successor);
+        int balance = balance(node);
+        int size = size(node);
+
+        setParent(successor, parent);
+        if (parent == NIL) {
+            setRootNode(successor);
+        } else if (left(parent) == node) {
+            setLeft(parent, successor);
+        } else {
+            setRight(parent, successor);
+        }
+        setLeft(successor, left(node));
+        setParent(left(successor), successor);
+        if (successorParent == node) {
+            setRight(successor, node);
+            setParent(node, successor);
+        } else {
+            setRight(successor, right(node));
+            setParent(right(successor), successor);
+            setLeft(successorParent, node);
+            setParent(node, successorParent);
+        }
+        setLeft(node, NIL);
+        setRight(node, successorRight);
+        if (successorRight != NIL) {
+            setParent(successorRight, node);
+        }
+        setBalance(node, balance(successor));
+        setSize(node, size(successor));
+        setBalance(successor, balance);
+        setSize(successor, size);
+    }
+
+    private void rotateLeft(int p) {
+        int r = right(p);
+        int rl = left(r);
+        setRight(p, rl);
+        if (rl != NIL) {
+            setParent(rl, p);
+        }
+        int parent = parent(p);
+        setParent(r, parent);
+        if (parent == NIL) {
+            setRootNode(r);
+        } else if (left(parent) == p) {
+            setLeft(parent, r);
+        } else {
+            setRight(parent, r);
+        }
+        setLeft(r, p);
+        setParent(p, r);
+        setSize(r, size(p));
+        setSize(p, sizeOf(left(p)) + sizeOf(right(p)) + 1);
+    }
+
+    private void rotateRight(int p) {
+        int l = left(p);
+        int lr = right(l);
+        setLeft(p, lr);
+        if (lr != NIL) {
+            setParent(lr, p);
+        }
+        int parent = parent(p);
+        setParent(l, parent);
+        if (parent == NIL) {
+            setRootNode(l);
+        } else if (right(parent) == p) {
+            setRight(parent, l);
+        } else {
+            setLeft(parent, l);
+        }
+        setRight(l, p);
+        setParent(p, l);
+        setSize(l, size(p));
+        setSize(p, sizeOf(left(p)) + sizeOf(right(p)) + 1);
+    }
+
+    private void fixAfterInsertion(int x) {
+        while (balance(x) != 0) {
+            if (balance(x) == 2) { // right heavy by 2?
+                int r = right(x);
+                if (balance(r) == 1) {
+                    setBalance(x, 0);
+                    setBalance(r, 0);
+                    rotateLeft(x);
+                } else { // balance(r) = -1
+                    rotateDoubleLeft(x);
+                }
+                break;
+            } else if (balance(x) == -2) {
+                int l = left(x);
+                if (balance(l) == -1) {
+                    setBalance(x, 0);
+                    setBalance(l, 0);
+                    rotateRight(x);
+                } else { // balance(l) = 1
+                    rotateDoubleRight(x);
+                }
+                break;
+            }
+
+            int parent = parent(x);
+            if (parent == NIL)
+                break;
+            if (left(parent) == x)
+                setBalance(parent, balance(parent) - 1);
+            else
+                setBalance(parent, balance(parent) + 1);
+
+            x = parent;
+        }
+    }
+
+    private void fixAfterDeletion(int x) {
+        while (true) {
+            if (balance(x) == 2) { // right heavy by 2?
+                int r = right(x);
+                if (balance(r) == 1) {
+                    setBalance(x, 0);
+                    setBalance(r, 0);
+                    rotateLeft(x);
+                } else if (balance(r) == 0) {
+                    setBalance(x, 1);
+                    setBalance(r, -1);
+                    rotateLeft(x);
+                    break;
+                } else { // balance(r) = -1
+                    rotateDoubleLeft(x);
+                }
+                x = parent(x);
+            } else if (balance(x) == -2) {
+                int l = left(x);
+                if (balance(l) == -1) {
+                    setBalance(x, 0);
+                    setBalance(l, 0);
+                    rotateRight(x);
+                } else if (balance(l) == 0) {
+                    setBalance(x, -1);
+                    setBalance(l, 1);
+                    rotateRight(x);
+                    break;
+                } else { // balance(l) = 1
+                    rotateDoubleRight(x);
+                }
+                x = parent(x);
+            }
+
+            int parent = parent(x);
+            if (parent == NIL)
+                break;
+            if (left(parent) == x) {
+                setBalance(parent, balance(parent) + 1);
+                if (balance(parent) == 1) {
+                    break;
+                }
+            } else {
+                setBalance(parent, balance(parent) - 1);
+                if (balance(parent) == -1) {
+                    break;
+                }
+            }
+
+            x = parent;
+        }
+    }
+
+    private void rotateDoubleLeft(int x) {
+        int r = right(x);
+        int rl = left(r);
+        int rlBalance = balance(rl);
+        setBalance(rl, 0);
+        setBalance(r, rlBalance == -1 ? 1 : 0);
+        setBalance(x, rlBalance == 1 ? -1 : 0);
+        rotateRight(r);
+        rotateLeft(x);
+    }
+
+    private void rotateDoubleRight(int x) {
+        int l = left(x);
+        int lr = right(l);
+        int lrBalance = balance(lr);
+        setBalance(lr, 0);
+        setBalance(l, lrBalance == 1 ? -1 : 0);
+        setBalance(x, lrBalance == -1 ? 1 : 0);
+        rotateLeft(l);
+        rotateRight(x);
+    }
+
+    private int sizeOf(int node) {
+        return node != NIL ? size(node) : 0;
+    }
+
+    private int id(Node<T> node) {
+        IndexedNode indexedNode = (IndexedNode) node;
+        if (indexedNode.tree() != this) {
+            throw new IllegalArgumentException("node of another tree");
+        }
+        return indexedNode.id;
+    }
+
+    private Node<T> handle(int node) {
+        return node != NIL ? new IndexedNode(node) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        @SuppressWarnings("unchecked")
+        IndexedAvlTree<T> tree = (IndexedAvlTree<T>) o;
+        if (size() != tree.size()) {
+            return false;
+        }
+        int n1 = firstNode();
+        int n2 = tree.firstNode();
+        while (n1 != NIL) {
+            if (!Objects.equals(value(n1), tree.value(n2))) {
+                return false;
+            }
+            n1 = successor(n1);
+            n2 = tree.successor(n2);
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int node = firstNode(); node != NIL; node = successor(node)) {
+            result = 31 * result + Objects.hashCode(value(node));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node -> {
+            sb.append(node).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    // a handle is only valid until its node is deleted, the id may be reused afterwards
+    private class IndexedNode implements Node<T> {
+
+        private final int id;
+
+        private IndexedNode(int id) {
+            this.id = id;
+        }
+
+        private IndexedAvlTree<T> tree() {
+            return IndexedAvlTree.this;
+        }
+
+        @Override
+        public T getValue() {
+            return value(id);
+        }
+
+        @Override
+        public Node<T> getParent() {
+            return handle(parent(id));
+        }
+
+        @Override
+        public Node<T> getLeft() {
+            return handle(left(id));
+        }
+
+        @Override
+        public Node<T> getRight() {
+            return handle(right(id));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            @SuppressWarnings("unchecked")
+            IndexedNode node = (IndexedNode) o;
+            return id == node.id && tree() == node.tree();
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(getValue());
+            if (parent(id) != NIL) {
+                sb.append(",parent");
+            }
+            if (left(id) != NIL) {
+                sb.append(",left");
+            }
+            if (right(id) != NIL) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
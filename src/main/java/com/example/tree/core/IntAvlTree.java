@@ -0,0 +1,720 @@
+package com.example.tree.core;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+public class IntAvlTree implements IntTree {
+
+    private IntNode root;
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public boolean add(int value) {
+        IntNode node = root;
+        if (node == null) {
+            root = new IntNode(value, null);
+            return true;
+        }
+        IntNode parent;
+        do {
+            parent = node;
+            if (value < node.value) {
+                node = node.left;
+            } else if (value > node.value) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        } while (node != null);
+        IntNode newNode = new IntNode(value, parent);
+        if (value < parent.value) {
+            parent.left = newNode;
+            parent.balance--;
+        } else {
+            parent.right = newNode;
+            parent.balance++;
+        }
+        for (IntNode p = parent; p != null; p = p.parent) {
+            p.size++;
+        }
+        fixAfterInsertion(parent);
+        return true;
+    }
+
+    @Override
+    public Node find(int value) {
+        IntNode node = root;
+        while (node != null) {
+            if (value < node.value) {
+                node = node.left;
+            } else if (value > node.value) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int rank(int value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node select(int index) {
+        Objects.checkIndex(index, size());
+        IntNode node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public int countBetween(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    @Override
+    public boolean remove(int value) {
+        Node node = find(value);
+        if (node != null) {
+            delete(node);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        IntNode node = root;
+        root = null;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+            do {
+                if (node.right != null) {
+                    node = node.right;
+                    while (node.left != null) {
+                        node = node.left;
+                    }
+                } else {
+                    IntNode parent = node.parent;
+                    while (parent != null && node == parent.right) {
+                        node.size = 0;
+                        node.parent = null;
+                        parent.left = null;
+                        parent.right = null;
+
+                        node = parent;
+                        parent = parent.parent;
+                    }
+                    node.size = 0;
+                    node.parent = null;
+                    if (parent != null) {
+                        parent.left = null;
+                    }
+
+                    node = parent;
+                }
+            } while (node != null);
+        }
+    }
+
+    @Override
+    public Node root() {
+        return root;
+    }
+
+    @Override
+    public Node first() {
+        IntNode node = root;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public Node last() {
+        IntNode node = root;
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public Node next(Node treeNode) {
+        if (treeNode == null) {
+            return null;
+        }
+        IntNode node = (IntNode) treeNode;
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) {
+                node = node.left;
+            }
+            return node;
+        }
+        IntNode parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    @Override
+    public Node prev(Node treeNode) {
+        if (treeNode == null) {
+            return null;
+        }
+        IntNode node = (IntNode) treeNode;
+        if (node.left != null) {
+            node = node.left;
+            while (node.right != null) {
+                node = node.right;
+            }
+            return node;
+        }
+        IntNode parent = node.parent;
+        while (parent != null && node == parent.left) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    @Override
+    public Node floor(int value) {
+        IntNode node = root;
+        IntNode result = null;
+        while (node != null) {
+            if (value < node.value) {
+                node = node.left;
+            } else if (value > node.value) {
+                result = node;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node ceiling(int value) {
+        IntNode node = root;
+        IntNode result = null;
+        while (node != null) {
+            if (value < node.value) {
+                result = node;
+                node = node.left;
+            } else if (value > node.value) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node lower(int value) {
+        IntNode node = root;
+        IntNode result = null;
+        while (node != null) {
+            if (value > node.value) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node higher(int value) {
+        IntNode node = root;
+        IntNode result = null;
+        while (node != null) {
+            if (value < node.value) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(Node treeNode) {
+        IntNode node = (IntNode) treeNode;
+        if (node.size == 0) {
+            return;
+        }
+        if (node.left != null && node.right != null) {
+            IntNode successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            swapWithSuccessor(node, successor);
+        }
+        IntNode replacement = node.left != null
+                ? node.left
+                : node.right;
+        IntNode parent = node.parent;
+        for (IntNode p = parent; p != null; p = p.parent) {
+            p.size--;
+        }
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+        boolean needFix;
+        if (parent == null) {
+            root = replacement;
+            needFix = false;
+        } else if (node == parent.left) {
+            parent.left = replacement;
+            parent.balance++;
+            needFix = parent.balance != 1;
+        } else {
+            parent.right = replacement;
+            parent.balance--;
+            needFix = parent.balance != -1;
+        }
+        node.size = 0;
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+        if (needFix) {
+            fixAfterDeletion(parent);
+        }
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Node> filter) {
+        boolean removed = false;
+        Node node = first();
+        while (node != null) {
+            Node next = next(node);
+            if (filter.test(node)) {
+                removed = true;
+                delete(node);
+            }
+            node = next;
+        }
+        return removed;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node> action) {
+        for (Node node = first(); node != null; node = next(node)) {
+            action.accept(node);
+        }
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node> action) {
+        for (Node node = last(); node != null; node = prev(node)) {
+            action.accept(node);
+        }
+    }
+
+    @Override
+    public boolean removeByValueIf(IntPredicate filter) {
+        return removeIf(node -> {
+            return filter.test(node.getValue());
+        });
+    }
+
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (IntNode node = (IntNode) first(); node != null; node = (IntNode) next(node)) {
+            action.accept(node.value);
+        }
+    }
+
+    @Override
+    public void forEachValueDescending(IntConsumer action) {
+        for (IntNode node = (IntNode) last(); node != null; node = (IntNode) prev(node)) {
+            action.accept(node.value);
+        }
+    }
+
+    // moves the successor into the place of the node, so that node handles stay attached to their values
+    private void swapWithSuccessor(IntNode node, IntNode successor) {
+        IntNode parent = node.parent;
+        IntNode successorParent = successor.parent;
+        IntNode successorRight = successor.right;
+        byte balance = node.balance;
+        int size = node.size;
+
+        successor.parent = parent;
+        if (parent == null) {
+            root = successor;
+        } else if (parent.left == node) {
+            parent.left = successor;
+        } else {
+            parent.right = successor;
+        }
+        successor.left = node.left;
+        successor.left.parent = successor;
+        if (successorParent == node) {
+            successor.right = node;
+            node.parent = successor;
+        } else {
+            successor.right = node.right;
+            successor.right.parent = successor;
+            successorParent.left = node;
+            node.parent = successorParent;
+        }
+        node.left = null;
+        node.right = successorRight;
+        if (successorRight != null) {
+            successorRight.parent = node;
+        }
+        node.balance = successor.balance;
+        node.size = successor.size;
+        successor.balance = balance;
+        successor.size = size;
+    }
+
+    private void rotateLeft(IntNode p) {
+        if (p != null) {
+            IntNode r = p.right;
+            p.right = r.left;
+            if (r.left != null) {
+                r.left.parent = p;
+            }
+            r.parent = p.parent;
+            if (p.parent == null) {
+                root = r;
+            } else if (p.parent.left == p) {
+                p.parent.left = r;
+            } else {
+                p.parent.right = r;
+            }
+            r.left = p;
+            p.parent = r;
+            r.size = p.size;
+            p.size = size(p.left) + size(p.right) + 1;
+        }
+    }
+
+    private void rotateRight(IntNode p) {
+        if (p != null) {
+            IntNode l = p.left;
+            p.left = l.right;
+            if (l.right != null) {
+                l.right.parent = p;
+            }
+            l.parent = p.parent;
+            if (p.parent == null) {
+                root = l;
+            } else if (p.parent.right == p) {
+                p.parent.right = l;
+            } else {
+                p.parent.left = l;
+            }
+            l.right = p;
+            p.parent = l;
+            l.size = p.size;
+            p.size = size(p.left) + size(p.right) + 1;
+        }
+    }
+
+    private void fixAfterInsertion(IntNode x) {
+        while (x.balance != 0) {
+            if (x.balance == 2) { // right heavy by 2?
+                if (x.right.balance == 1) {
+                    x.balance = 0;
+                    x.right.balance = 0;
+                    rotateLeft(x);
+                } else { // x.right.balance = -1
+                    int rlBalance = x.right.left.balance;
+                    x.right.left.balance = 0;
+                    x.right.balance = 0;
+                    x.balance = 0;
+                    if (rlBalance == 1)
+                        x.balance = -1;
+                    else if (rlBalance == -1)
+                        x.right.balance = 1;
+
+                    rotateRight(x.right);
+                    rotateLeft(x);
+                }
+                break;
+            } else if (x.balance == -2) {
+                if (x.left.balance == -1) {
+                    x.balance = 0;
+                    x.left.balance = 0;
+                    rotateRight(x);
+                } else { // x.left.balance = 1
+                    int lrBalance = x.left.right.balance;
+                    x.left.right.balance = 0;
+                    x.left.balance = 0;
+                    x.balance = 0;
+                    if (lrBalance == 1)
+                        x.left.balance = -1;
+                    else if (lrBalance == -1)
+                        x.balance = 1;
+
+                    rotateLeft(x.left);
+                    rotateRight(x);
+                }
+                break;
+            }
+
+            if (x.parent == null)
+                break;
+            if (x.parent.left == x)
+                x.parent.balance--;
+            else
+                x.parent.balance++;
+
+            x = x.parent;
+        }
+    }
+
+    private void fixAfterDeletion(IntNode x) {
+        while (true) {
+            if (x.balance == 2) { // right heavy by 2?
+                if (x.right.balance == 1) {
+                    x.balance = 0;
+                    x.right.balance = 0;
+                    rotateLeft(x);
+                } else if (x.right.balance == 0) {
+                    x.balance = 1;
+                    x.right.balance = -1;
+                    rotateLeft(x);
+                    break;
+                } else { // x.right.balance = -1
+                    int rlBalance = x.right.left.balance;
+                    x.right.left.balance = 0;
+                    x.right.balance = 0;
+                    x.balance = 0;
+                    if (rlBalance == 1)
+                        x.balance = -1;
+                    else if (rlBalance == -1)
+                        x.right.balance = 1;
+                    rotateRight(x.right);
+                    rotateLeft(x);
+                }
+                x = x.parent;
+            } else if (x.balance == -2) {
+                if (x.left.balance == -1) {
+                    x.balance = 0;
+                    x.left.balance = 0;
+                    rotateRight(x);
+                } else if (x.left.balance == 0) {
+                    x.balance = -1;
+                    x.left.balance = 1;
+                    rotateRight(x);
+                    break;
+                } else { // (x.left.balance == 1)
+                    int lrBalance = x.left.right.balance;
+                    x.left.right.balance = 0;
+                    x.left.balance = 0;
+                    x.balance = 0;
+                    if (lrBalance == 1)
+                        x.left.balance = -1;
+                    else if (lrBalance == -1)
+                        x.balance = 1;
+                    rotateLeft(x.left);
+                    rotateRight(x);
+                }
+                x = x.parent;
+            }
+
+            if (x.parent == null)
+                break;
+            if (x.parent.left == x) {
+                x.parent.balance++;
+                if (x.parent.balance == 1) {
+                    break;
+                }
+            } else {
+                x.parent.balance--;
+                if (x.parent.balance == -1) {
+                    break;
+                }
+            }
+
+            x = x.parent;
+        }
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(int value, boolean inclusive) {
+        int rank = 0;
+        IntNode node = root;
+        while (node != null) {
+            if (value < node.value) {
+                node = node.left;
+            } else if (value > node.value) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                rank += size(node.left);
+                return inclusive ? rank + 1 : rank;
+            }
+        }
+        return rank;
+    }
+
+    private static int size(IntNode node) {
+        return node != null ? node.size : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntAvlTree tree = (IntAvlTree) o;
+        if (size() != tree.size()) {
+            return false;
+        }
+        IntNode n1 = (IntNode) first();
+        IntNode n2 = (IntNode) tree.first();
+        while (n1 != null) {
+            if (n1.value != n2.value) {
+                return false;
+            }
+            n1 = (IntNode) next(n1);
+            n2 = (IntNode) tree.next(n2);
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (IntNode node = (IntNode) first(); node != null; node = (IntNode) next(node)) {
+            result = 31 * result + Integer.hashCode(node.value);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node -> {
+            sb.append(node).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static class IntNode implements Node {
+
+        private final int value;
+
+        private IntNode parent;
+
+        private IntNode left;
+
+        private IntNode right;
+
+        private byte balance;
+
+        private int size = 1;
+
+        private IntNode(int value, IntNode parent) {
+            this.value = value;
+            this.parent = parent;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+
+        @Override
+        public Node getParent() {
+            return parent;
+        }
+
+        @Override
+        public Node getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IntNode node = (IntNode) o;
+            return value == node.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(value);
+            if (parent != null) {
+                sb.append(",parent");
+            }
+            if (left != null) {
+                sb.append(",left");
+            }
+            if (right != null) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,797 @@
+package com.example.tree.core;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// BTree with the keys of a page in an int array, a page of the default capacity spans four cache lines.
+// Handles work as in BTree: only valid until the tree is changed, getParent() returns null.
+public class IntBTree implements IntTree {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // below this many keys a linear scan is cheaper than further halving, it runs without unpredictable branches
+    private static final int LINEAR_SCAN = 8;
+
+    // no B-tree of at most 2^31 keys and at least two children per inner page is deeper than this
+    private static final int MAX_DEPTH = 32;
+
+    private final int capacity;
+
+    // fewest keys a page other than the root may hold
+    private final int minKeys;
+
+    private Page root;
+
+    public IntBTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntBTree(int capacity) {
+        if (capacity < 3) {
+            throw new IllegalArgumentException("capacity < 3");
+        }
+        this.capacity = capacity;
+        this.minKeys = (capacity - 1) / 2;
+        this.root = new Page(capacity, true);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.count == 0;
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return true;
+            }
+            if (page.children == null) {
+                return false;
+            }
+            page = page.children[-i - 1];
+        }
+    }
+
+    @Override
+    public boolean add(int value) {
+        if (root.count == capacity) {
+            Page page = new Page(capacity, false);
+            page.children[0] = root;
+            page.size = root.size;
+            split(page, 0);
+            root = page;
+        }
+        Page[] path = new Page[MAX_DEPTH];
+        int depth = 0;
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return false;
+            }
+            int pos = -i - 1;
+            if (page.children == null) {
+                insertKey(page, pos, value);
+                page.size++;
+                for (int d = 0; d < depth; d++) {
+                    path[d].size++;
+                }
+                return true;
+            }
+            if (page.children[pos].count == capacity) {
+                split(page, pos);
+                if (value == page.keys[pos]) {
+                    return false;
+                }
+                if (value > page.keys[pos]) {
+                    pos++;
+                }
+            }
+            path[depth++] = page;
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node find(int value) {
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            if (page.children == null) {
+                return null;
+            }
+            page = page.children[-i - 1];
+        }
+    }
+
+    @Override
+    public int rank(int value) {
+        return rank(value, false);
+    }
+
+    @Override
+    public Node select(int index) {
+        Objects.checkIndex(index, size());
+        Page page = root;
+        while (page.children != null) {
+            int i = 0;
+            while (true) {
+                int childSize = page.children[i].size;
+                if (index < childSize) {
+                    page = page.children[i];
+                    break;
+                }
+                index -= childSize;
+                if (index == 0) {
+                    return handle(page, i);
+                }
+                index--;
+                i++;
+            }
+        }
+        return handle(page, index);
+    }
+
+    @Override
+    public int countBetween(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        return rank(hi, true) - rank(lo, false);
+    }
+
+    @Override
+    public boolean remove(int value) {
+        Page[] path = new Page[MAX_DEPTH];
+        int[] slots = new int[MAX_DEPTH];
+        int depth = 0;
+        Page page = root;
+        int i;
+        while (true) {
+            i = search(page, value);
+            if (i >= 0) {
+                break;
+            }
+            if (page.children == null) {
+                return false;
+            }
+            path[depth] = page;
+            slots[depth] = -i - 1;
+            depth++;
+            page = page.children[-i - 1];
+        }
+        if (page.children != null) {
+            // the greatest key of the left subtree takes the place of the removed one
+            path[depth] = page;
+            slots[depth] = i;
+            depth++;
+            Page leaf = page.children[i];
+            while (leaf.children != null) {
+                path[depth] = leaf;
+                slots[depth] = leaf.count;
+                depth++;
+                leaf = leaf.children[leaf.count];
+            }
+            page.keys[i] = leaf.keys[leaf.count - 1];
+            i = leaf.count - 1;
+            page = leaf;
+        }
+        removeKey(page, i);
+        page.size--;
+        for (int d = 0; d < depth; d++) {
+            path[d].size--;
+        }
+        while (depth > 0 && page.count < minKeys) {
+            depth--;
+            page = path[depth];
+            fixChild(page, slots[depth]);
+        }
+        if (root.count == 0 && root.children != null) {
+            root = root.children[0];
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = new Page(capacity, true);
+    }
+
+    @Override
+    public Node root() {
+        return handle(root);
+    }
+
+    @Override
+    public Node first() {
+        Page page = root;
+        if (page.count == 0) {
+            return null;
+        }
+        while (page.children != null) {
+            page = page.children[0];
+        }
+        return handle(page, 0);
+    }
+
+    @Override
+    public Node last() {
+        Page page = root;
+        if (page.count == 0) {
+            return null;
+        }
+        while (page.children != null) {
+            page = page.children[page.count];
+        }
+        return handle(page, page.count - 1);
+    }
+
+    // pages have no parent links, so the neighbours are found by value from the root
+    @Override
+    public Node next(Node node) {
+        return node != null ? higher(node.getValue()) : null;
+    }
+
+    @Override
+    public Node prev(Node node) {
+        return node != null ? lower(node.getValue()) : null;
+    }
+
+    @Override
+    public Node floor(int value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            int pos = -i - 1;
+            if (pos > 0) {
+                resultPage = page;
+                result = pos - 1;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node ceiling(int value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            if (i >= 0) {
+                return handle(page, i);
+            }
+            int pos = -i - 1;
+            if (pos < page.count) {
+                resultPage = page;
+                result = pos;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node lower(int value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            // for an equal key the lower values are in the subtree left of it
+            int pos = i >= 0 ? i : -i - 1;
+            if (pos > 0) {
+                resultPage = page;
+                result = pos - 1;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public Node higher(int value) {
+        Page page = root;
+        Page resultPage = null;
+        int result = 0;
+        while (true) {
+            int i = search(page, value);
+            // for an equal key the higher values are in the subtree right of it
+            int pos = i >= 0 ? i + 1 : -i - 1;
+            if (pos < page.count) {
+                resultPage = page;
+                result = pos;
+            }
+            if (page.children == null) {
+                return resultPage != null ? handle(resultPage, result) : null;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    @Override
+    public void delete(Node node) {
+        remove(node.getValue());
+    }
+
+    // the filter sees every node before the tree changes, the survivors are then loaded into new pages in O(n)
+    @Override
+    public boolean removeIf(Predicate<? super Node> filter) {
+        int[] kept = new int[size()];
+        int[] count = {0};
+        forEach(root, node -> {
+            if (!filter.test(node)) {
+                kept[count[0]++] = node.getValue();
+            }
+        });
+        if (count[0] == kept.length) {
+            return false;
+        }
+        root = build(kept, count[0]);
+        return true;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node> action) {
+        forEach(root, action);
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node> action) {
+        forEachDescending(root, action);
+    }
+
+    @Override
+    public boolean removeByValueIf(IntPredicate filter) {
+        int[] kept = new int[size()];
+        int[] count = {0};
+        forEachValue(root, value -> {
+            if (!filter.test(value)) {
+                kept[count[0]++] = value;
+            }
+        });
+        if (count[0] == kept.length) {
+            return false;
+        }
+        root = build(kept, count[0]);
+        return true;
+    }
+
+    @Override
+    public void forEachValue(IntConsumer action) {
+        forEachValue(root, action);
+    }
+
+    @Override
+    public void forEachValueDescending(IntConsumer action) {
+        forEachValueDescending(root, action);
+    }
+
+    // the index of the key, or -(insertion point) - 1 if the page does not hold it
+    private int search(Page page, int value) {
+        int[] keys = page.keys;
+        int lo = 0;
+        int hi = page.count;
+        while (hi - lo > LINEAR_SCAN) {
+            int mid = (lo + hi) >>> 1;
+            int key = keys[mid];
+            if (value < key) {
+                hi = mid;
+            } else if (value > key) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        int i = lo;
+        while (i < hi && keys[i] < value) {
+            i++;
+        }
+        return i < hi && keys[i] == value ? i : -i - 1;
+    }
+
+    // number of values less than (or, if inclusive, equal to) the given one
+    private int rank(int value, boolean inclusive) {
+        int rank = 0;
+        Page page = root;
+        while (true) {
+            int i = search(page, value);
+            int pos = i >= 0 ? i : -i - 1;
+            rank += pos;
+            if (page.children != null) {
+                for (int c = 0; c < pos; c++) {
+                    rank += page.children[c].size;
+                }
+            }
+            if (i >= 0) {
+                if (page.children != null) {
+                    rank += page.children[i].size;
+                }
+                return inclusive ? rank + 1 : rank;
+            }
+            if (page.children == null) {
+                return rank;
+            }
+            page = page.children[pos];
+        }
+    }
+
+    // splits the full child at the slot around its middle key, which moves up into the parent
+    private void split(Page parent, int slot) {
+        Page child = parent.children[slot];
+        int middle = capacity / 2;
+        Page right = new Page(capacity, child.children == null);
+        int rightCount = capacity - middle - 1;
+        System.arraycopy(child.keys, middle + 1, right.keys, 0, rightCount);
+        right.count = rightCount;
+        right.size = rightCount;
+        if (child.children != null) {
+            System.arraycopy(child.children, middle + 1, right.children, 0, rightCount + 1);
+            for (int c = 0; c <= rightCount; c++) {
+                right.size += right.children[c].size;
+                child.children[middle + 1 + c] = null;
+            }
+        }
+        int middleKey = child.keys[middle];
+        child.count = middle;
+        child.size -= right.size + 1;
+
+        System.arraycopy(parent.keys, slot, parent.keys, slot + 1, parent.count - slot);
+        System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, parent.count - slot);
+        parent.keys[slot] = middleKey;
+        parent.children[slot + 1] = right;
+        parent.count++;
+    }
+
+    // the child at the slot has one key too few, it borrows one through the parent or is merged with a sibling
+    private void fixChild(Page parent, int slot) {
+        Page child = parent.children[slot];
+        if (slot > 0 && parent.children[slot - 1].count > minKeys) {
+            Page left = parent.children[slot - 1];
+            Page moved = left.children != null ? left.children[left.count] : null;
+            insertKey(child, 0, parent.keys[slot - 1]);
+            parent.keys[slot - 1] = left.keys[left.count - 1];
+            if (moved != null) {
+                System.arraycopy(child.children, 0, child.children, 1, child.count);
+                child.children[0] = moved;
+                left.children[left.count] = null;
+            }
+            left.count--;
+            int movedSize = 1 + (moved != null ? moved.size : 0);
+            left.size -= movedSize;
+            child.size += movedSize;
+        } else if (slot < parent.count && parent.children[slot + 1].count > minKeys) {
+            Page right = parent.children[slot + 1];
+            Page moved = right.children != null ? right.children[0] : null;
+            child.keys[child.count] = parent.keys[slot];
+            child.count++;
+            if (moved != null) {
+                child.children[child.count] = moved;
+                System.arraycopy(right.children, 1, right.children, 0, right.count);
+                right.children[right.count] = null;
+            }
+            parent.keys[slot] = right.keys[0];
+            removeKey(right, 0);
+            int movedSize = 1 + (moved != null ? moved.size : 0);
+            right.size -= movedSize;
+            child.size += movedSize;
+        } else if (slot > 0) {
+            merge(parent, slot - 1);
+        } else {
+            merge(parent, slot);
+        }
+    }
+
+    // moves the key at the slot and the right child of it into the left child
+    private void merge(Page parent, int slot) {
+        Page left = parent.children[slot];
+        Page right = parent.children[slot + 1];
+        left.keys[left.count] = parent.keys[slot];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+        if (left.children != null) {
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+        }
+        left.count += right.count + 1;
+        left.size += right.size + 1;
+        removeKey(parent, slot);
+        System.arraycopy(parent.children, slot + 2, parent.children, slot + 1, parent.count - slot);
+        parent.children[parent.count + 1] = null;
+    }
+
+    private void insertKey(Page page, int pos, int key) {
+        System.arraycopy(page.keys, pos, page.keys, pos + 1, page.count - pos);
+        page.keys[pos] = key;
+        page.count++;
+    }
+
+    private void removeKey(Page page, int pos) {
+        page.count--;
+        System.arraycopy(page.keys, pos + 1, page.keys, pos, page.count - pos);
+    }
+
+    // fills the lowest possible number of levels, spreading the keys evenly so that every page holds enough of them
+    private Page build(int[] keys, int length) {
+        int height = 1;
+        while (maxKeys(height) < length) {
+            height++;
+        }
+        return build(keys, 0, length, height);
+    }
+
+    private Page build(int[] keys, int from, int to, int height) {
+        int n = to - from;
+        if (height == 1) {
+            Page page = new Page(capacity, true);
+            System.arraycopy(keys, from, page.keys, 0, n);
+            page.count = n;
+            page.size = n;
+            return page;
+        }
+        long childMax = maxKeys(height - 1);
+        int children = (int) Math.max(2, (n + 1 + childMax) / (childMax + 1));
+        Page page = new Page(capacity, false);
+        int childKeys = n - (children - 1);
+        int start = from;
+        for (int c = 0; c < children; c++) {
+            int count = childKeys / children + (c < childKeys % children ? 1 : 0);
+            page.children[c] = build(keys, start, start + count, height - 1);
+            start += count;
+            if (c < children - 1) {
+                page.keys[c] = keys[start];
+                start++;
+            }
+        }
+        page.count = children - 1;
+        page.size = n;
+        return page;
+    }
+
+    // keys held by a full tree of the given height, saturated at Long.MAX_VALUE
+    private long maxKeys(int height) {
+        long keys = 1;
+        for (int h = 0; h < height; h++) {
+            if (keys > Long.MAX_VALUE / (capacity + 1)) {
+                return Long.MAX_VALUE;
+            }
+            keys *= capacity + 1;
+        }
+        return keys - 1;
+    }
+
+    private void forEach(Page page, Consumer<? super Node> action) {
+        for (int i = 0; i < page.count; i++) {
+            if (page.children != null) {
+                forEach(page.children[i], action);
+            }
+            action.accept(handle(page, i));
+        }
+        if (page.children != null) {
+            forEach(page.children[page.count], action);
+        }
+    }
+
+    private void forEachDescending(Page page, Consumer<? super Node> action) {
+        if (page.children != null) {
+            forEachDescending(page.children[page.count], action);
+        }
+        for (int i = page.count - 1; i >= 0; i--) {
+            action.accept(handle(page, i));
+            if (page.children != null) {
+                forEachDescending(page.children[i], action);
+            }
+        }
+    }
+
+    private void forEachValue(Page page, IntConsumer action) {
+        for (int i = 0; i < page.count; i++) {
+            if (page.children != null) {
+                forEachValue(page.children[i], action);
+            }
+            action.accept(page.keys[i]);
+        }
+        if (page.children != null) {
+            forEachValue(page.children[page.count], action);
+        }
+    }
+
+    private void forEachValueDescending(Page page, IntConsumer action) {
+        if (page.children != null) {
+            forEachValueDescending(page.children[page.count], action);
+        }
+        for (int i = page.count - 1; i >= 0; i--) {
+            action.accept(page.keys[i]);
+            if (page.children != null) {
+                forEachValueDescending(page.children[i], action);
+            }
+        }
+    }
+
+    private Node handle(Page page) {
+        return page.count > 0 ? new PageNode(page, 0, page.count) : null;
+    }
+
+    // the handle of the key at the index, with the key range a binary search over the page narrows down to it
+    private Node handle(Page page, int index) {
+        int lo = 0;
+        int hi = page.count;
+        while (true) {
+            int mid = (lo + hi) >>> 1;
+            if (index < mid) {
+                hi = mid;
+            } else if (index > mid) {
+                lo = mid + 1;
+            } else {
+                return new PageNode(page, lo, hi);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntBTree tree = (IntBTree) o;
+        return size() == tree.size() && Arrays.equals(toArray(), tree.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    private int[] toArray() {
+        int[] values = new int[size()];
+        int[] count = {0};
+        forEachValue(value -> {
+            values[count[0]++] = value;
+        });
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node -> {
+            sb.append(node).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static final class Page {
+
+        private final int[] keys;
+
+        // null for leaves
+        private final Page[] children;
+
+        private int count;
+
+        // number of keys in the subtree
+        private int size;
+
+        private Page(int capacity, boolean leaf) {
+            keys = new int[capacity];
+            children = leaf ? null : new Page[capacity + 1];
+        }
+    }
+
+    // the key in the middle of the range [lo, hi) of a page, as the node of a binary search over that range
+    private class PageNode implements Node {
+
+        private final Page page;
+
+        private final int lo;
+
+        private final int hi;
+
+        private final int index;
+
+        private PageNode(Page page, int lo, int hi) {
+            this.page = page;
+            this.lo = lo;
+            this.hi = hi;
+            this.index = (lo + hi) >>> 1;
+        }
+
+        private int subtreeSize() {
+            int size = hi - lo;
+            if (page.children != null) {
+                for (int c = lo; c <= hi; c++) {
+                    size += page.children[c].size;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public int getValue() {
+            return page.keys[index];
+        }
+
+        @Override
+        public Node getParent() {
+            return null;
+        }
+
+        @Override
+        public Node getLeft() {
+            if (lo < index) {
+                return new PageNode(page, lo, index);
+            }
+            return page.children != null ? handle(page.children[index]) : null;
+        }
+
+        @Override
+        public Node getRight() {
+            if (index + 1 < hi) {
+                return new PageNode(page, index + 1, hi);
+            }
+            return page.children != null ? handle(page.children[index + 1]) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PageNode node = (PageNode) o;
+            return page == node.page && lo == node.lo && hi == node.hi;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(page) + index;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(getValue());
+            if (getLeft() != null) {
+                sb.append(",left");
+            }
+            if (getRight() != null) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
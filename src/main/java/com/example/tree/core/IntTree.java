@@ -0,0 +1,97 @@
+package com.example.tree.core;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+public interface IntTree {
+
+    interface Node {
+
+        int getValue();
+
+        Node getParent();
+
+        Node getLeft();
+
+        Node getRight();
+    }
+
+    boolean isEmpty();
+
+    int size();
+
+    boolean contains(int value);
+
+    boolean add(int value);
+
+    Node find(int value);
+
+    int rank(int value);
+
+    Node select(int index);
+
+    int countBetween(int lo, int hi);
+
+    boolean remove(int value);
+
+    void clear();
+
+    Node root();
+
+    Node first();
+
+    Node last();
+
+    Node next(Node node);
+
+    Node prev(Node node);
+
+    Node floor(int value);
+
+    Node ceiling(int value);
+
+    Node lower(int value);
+
+    Node higher(int value);
+
+    void delete(Node node);
+
+    boolean removeIf(Predicate<? super Node> filter);
+
+    void forEach(Consumer<? super Node> action);
+
+    void forEachDescending(Consumer<? super Node> action);
+
+    boolean removeByValueIf(IntPredicate filter);
+
+    void forEachValue(IntConsumer action);
+
+    void forEachValueDescending(IntConsumer action);
+
+    // immutable copy for lookups only, later changes to the tree are not seen by it
+    default FrozenIntTree freeze() {
+        return new FrozenIntTree(this);
+    }
+
+    default void forEachInRange(int lo, boolean loInclusive, int hi, boolean hiInclusive,
+                                Consumer<? super Node> action) {
+        Node node = loInclusive ? ceiling(lo) : higher(lo);
+        while (node != null) {
+            int value = node.getValue();
+            if (value > hi || (value == hi && !hiInclusive)) {
+                break;
+            }
+            action.accept(node);
+            node = next(node);
+        }
+    }
+
+    default void forEachValueInRange(int lo, boolean loInclusive, int hi, boolean hiInclusive,
+                                     IntConsumer action) {
+        forEachInRange(lo, loInclusive, hi, hiInclusive, node -> {
+            action.accept(node.getValue());
+        });
+    }
+}
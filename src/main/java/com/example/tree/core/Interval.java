@@ -0,0 +1,58 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+
+// closed interval [start, end], ordered by start and then by end
+public final class Interval {
+
+    static final Comparator<Interval> ORDER = (a, b) -> {
+        int cmp = Long.compare(a.start, b.start);
+        return cmp != 0 ? cmp : Long.compare(a.end, b.end);
+    };
+
+    private final long start;
+
+    private final long end;
+
+    public Interval(long start, long end) {
+        if (start > end) {
+            throw new IllegalArgumentException("start > end");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean overlaps(long lo, long hi) {
+        return start <= hi && end >= lo;
+    }
+
+    public boolean contains(long point) {
+        return start <= point && point <= end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Interval interval = (Interval) o;
+        return start == interval.start && end == interval.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(start) + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "]";
+    }
+}
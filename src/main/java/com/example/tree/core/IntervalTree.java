@@ -0,0 +1,89 @@
+package com.example.tree.core;
+
+import java.util.function.Consumer;
+
+// AvlTree of intervals ordered by start, every node keeps the greatest end in its subtree.
+// A query skips the subtrees that end before it and the ones that start after it, which bounds it by
+// O((k + 1) log n) for k results. Results are passed to the visitor in order of start, nothing is allocated.
+public class IntervalTree extends AvlTree<Interval> {
+
+    public IntervalTree() {
+        super(Interval.ORDER);
+    }
+
+    public boolean add(long start, long end) {
+        return add(new Interval(start, end));
+    }
+
+    public boolean remove(long start, long end) {
+        return remove(new Interval(start, end));
+    }
+
+    // the intervals that share at least one point with [lo, hi]
+    public void overlapping(long lo, long hi, Consumer<? super Interval> visitor) {
+        if (lo <= hi) {
+            overlapping(node(root()), lo, hi, visitor);
+        }
+    }
+
+    public void containingPoint(long point, Consumer<? super Interval> visitor) {
+        overlapping(node(root()), point, point, visitor);
+    }
+
+    public int countOverlapping(long lo, long hi) {
+        int[] count = {0};
+        overlapping(lo, hi, interval -> {
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    // the greatest end of all intervals, Long.MIN_VALUE if there are none
+    public long maxEnd() {
+        return maxEnd(node(root()));
+    }
+
+    private static void overlapping(IntervalNode node, long lo, long hi, Consumer<? super Interval> visitor) {
+        while (node != null && node.maxEnd >= lo) {
+            overlapping(node(node.left), lo, hi, visitor);
+            Interval interval = node.value;
+            if (interval.getStart() > hi) {
+                return;
+            }
+            if (interval.getEnd() >= lo) {
+                visitor.accept(interval);
+            }
+            node = node(node.right);
+        }
+    }
+
+    @Override
+    AvlNode<Interval> newNode(Interval value, AvlNode<Interval> parent) {
+        return new IntervalNode(value, parent);
+    }
+
+    @Override
+    void augment(AvlNode<Interval> node) {
+        IntervalNode n = (IntervalNode) node;
+        n.maxEnd = Math.max(n.value.getEnd(), Math.max(maxEnd(node(n.left)), maxEnd(node(n.right))));
+    }
+
+    private static long maxEnd(IntervalNode node) {
+        return node != null ? node.maxEnd : Long.MIN_VALUE;
+    }
+
+    // every node of the tree comes from newNode
+    private static IntervalNode node(Node<Interval> node) {
+        return (IntervalNode) node;
+    }
+
+    private static class IntervalNode extends AvlNode<Interval> {
+
+        private long maxEnd;
+
+        private IntervalNode(Interval value, AvlNode<Interval> parent) {
+            super(value, parent);
+            this.maxEnd = value.getEnd();
+        }
+    }
+}
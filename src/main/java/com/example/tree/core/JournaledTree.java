@@ -0,0 +1,710 @@
+package com.example.tree.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+// AvlTree whose changes are appended to a write-ahead journal before the changing call returns. A change is
+// applied to the tree, recorded in a memory buffer, and then written and forced by whichever waiting caller gets
+// the journal first, together with the records of everyone who arrived during the previous force (group commit).
+// When the journal grows past a limit, the tree is saved as a TreeSnapshot checkpoint and the journal emptied.
+// Opening loads the checkpoint and replays the journal up to its first torn record.
+public class JournaledTree<T> implements Tree<T>, Closeable {
+
+    private static final int MAGIC = 0x544a524e;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int KEY_WIDTH_OFFSET = 8;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    private static final int CHECKSUM_SIZE = 4;
+
+    private static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private static final int INITIAL_BUFFER = 1 << 12;
+
+    private final AvlTree<T> tree;
+
+    private final KeyCodec<T> codec;
+
+    private final Path checkpointPath;
+
+    private final FileChannel channel;
+
+    private final long checkpointBytes;
+
+    // op, value, checksum of both
+    private final int recordSize;
+
+    // guards the tree, the pending records and the sequence numbers
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // held while the journal file is written, forced or truncated
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    private final CRC32C crc = new CRC32C();
+
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    // number of records appended so far, and how many of them are durable
+    private long appended;
+
+    private long durable;
+
+    private long journalSize;
+
+    // a failed write or force leaves the journal in an unknown state, later changes are refused
+    private IOException failure;
+
+    private JournaledTree(AvlTree<T> tree, KeyCodec<T> codec, Path checkpointPath, FileChannel channel,
+                          long journalSize, long checkpointBytes) {
+        this.tree = tree;
+        this.codec = codec;
+        this.checkpointPath = checkpointPath;
+        this.channel = channel;
+        this.journalSize = journalSize;
+        this.checkpointBytes = checkpointBytes;
+        this.recordSize = 1 + codec.width() + CHECKSUM_SIZE;
+    }
+
+    public static <T> JournaledTree<T> open(Path directory, KeyCodec<T> codec,
+                                            Comparator<? super T> comparator) throws IOException {
+        return open(directory, codec, comparator, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    public static <T> JournaledTree<T> open(Path directory, KeyCodec<T> codec, Comparator<? super T> comparator,
+                                            long checkpointBytes) throws IOException {
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException("checkpointBytes <= 0");
+        }
+        Files.createDirectories(directory);
+        Path checkpointPath = directory.resolve("checkpoint");
+        AvlTree<T> tree = Files.exists(checkpointPath)
+                ? TreeSnapshot.load(checkpointPath, codec, comparator)
+                : new AvlTree<>(comparator);
+        Path journalPath = directory.resolve("journal");
+        boolean created = !Files.exists(journalPath);
+        FileChannel channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long journalSize = replay(channel, tree, codec);
+            if (created) {
+                TreeSnapshot.forceDirectory(directory.toAbsolutePath());
+            }
+            return new JournaledTree<>(tree, codec, checkpointPath, channel, journalSize, checkpointBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Applies the records to the tree and cuts off a torn tail. A crash between saving a checkpoint and emptying
+    // the journal replays records the checkpoint already holds, which is harmless: after any sequence of adds,
+    // removes and clears a value is present exactly when the last record touching it added it.
+    private static <T> long replay(FileChannel channel, AvlTree<T> tree, KeyCodec<T> codec) throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (length < HEADER_SIZE) {
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putInt(KEY_WIDTH_OFFSET, codec.width());
+            channel.truncate(0);
+            writeFully(channel, header, 0);
+            channel.force(true);
+            return HEADER_SIZE;
+        }
+        readFully(channel, header, 0);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("not a tree journal");
+        }
+        if (header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("unsupported version " + header.getInt(VERSION_OFFSET));
+        }
+        if (header.getInt(KEY_WIDTH_OFFSET) != codec.width()) {
+            throw new IOException("key width mismatch");
+        }
+        int recordSize = 1 + codec.width() + CHECKSUM_SIZE;
+        int checked = recordSize - CHECKSUM_SIZE;
+        long records = (length - HEADER_SIZE) / recordSize;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(records, 1 << 12) * recordSize);
+        CRC32C crc = new CRC32C();
+        long position = HEADER_SIZE;
+        long end = HEADER_SIZE + records * recordSize;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(channel, buffer, position);
+            for (int offset = 0; offset < buffer.limit(); offset += recordSize) {
+                crc.reset();
+                crc.update(buffer.duplicate().position(offset).limit(offset + checked));
+                if ((int) crc.getValue() != buffer.getInt(offset + checked)) {
+                    channel.truncate(position);
+                    channel.force(true);
+                    return position;
+                }
+                byte op = buffer.get(offset);
+                if (op == ADD) {
+                    tree.add(codec.read(buffer, offset + 1));
+                } else if (op == REMOVE) {
+                    tree.remove(codec.read(buffer, offset + 1));
+                } else if (op == CLEAR) {
+                    tree.clear();
+                } else {
+                    throw new IOException("unknown journal record " + op);
+                }
+                position += recordSize;
+            }
+        }
+        if (position < length) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of journal");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // saves a copy of the tree and empties the journal. The values are copied under the lock and written without
+    // it, so changes go on meanwhile and only wait for their commit. The io lock keeps the journal file from
+    // growing while the checkpoint is written: everything in it is older than the copy, and the pending records
+    // up to the copy are dropped once it is durable
+    public void checkpoint() throws IOException {
+        ioLock.lock();
+        try {
+            List<T> values;
+            long covered;
+            int coveredBytes;
+            lock.lock();
+            try {
+                checkFailure();
+                values = new ArrayList<>(tree.size());
+                tree.forEachValue(values::add);
+                covered = appended;
+                coveredBytes = pending.position();
+            } finally {
+                lock.unlock();
+            }
+            // the checkpoint must be durable under its name before the journal is emptied
+            TreeSnapshot.save(AvlTree.fromSorted(values, tree.comparator()), codec, checkpointPath);
+            try {
+                channel.truncate(HEADER_SIZE);
+                channel.force(true);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+            lock.lock();
+            try {
+                journalSize = HEADER_SIZE;
+                pending.flip().position(coveredBytes);
+                pending.compact();
+                durable = Math.max(durable, covered);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ioLock.lock();
+        try {
+            if (failure == null) {
+                flush();
+            }
+            channel.close();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(T value) {
+        lock.lock();
+        try {
+            return tree.contains(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean add(T value) {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            if (!tree.add(value)) {
+                return false;
+            }
+            sequence = append(ADD, value);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return true;
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        lock.lock();
+        try {
+            return tree.find(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int rank(T value) {
+        lock.lock();
+        try {
+            return tree.rank(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        lock.lock();
+        try {
+            return tree.select(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        lock.lock();
+        try {
+            return tree.countBetween(lo, hi);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            if (!tree.remove(value)) {
+                return false;
+            }
+            sequence = append(REMOVE, value);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            tree.clear();
+            sequence = appendClear();
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+    }
+
+    @Override
+    public Node<T> root() {
+        lock.lock();
+        try {
+            return tree.root();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> first() {
+        lock.lock();
+        try {
+            return tree.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> last() {
+        lock.lock();
+        try {
+            return tree.last();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> next(Node<T> node) {
+        lock.lock();
+        try {
+            return tree.next(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        lock.lock();
+        try {
+            return tree.prev(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        lock.lock();
+        try {
+            return tree.floor(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        lock.lock();
+        try {
+            return tree.ceiling(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        lock.lock();
+        try {
+            return tree.lower(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        lock.lock();
+        try {
+            return tree.higher(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            T value = node.getValue();
+            // a node that was deleted before has no value and changes nothing, it must not be journaled
+            if (value == null) {
+                return;
+            }
+            tree.delete(node);
+            sequence = append(REMOVE, value);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+    }
+
+    // the removed values share one force
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            List<T> removed = new ArrayList<>();
+            tree.removeIf(node -> {
+                if (filter.test(node)) {
+                    removed.add(node.getValue());
+                    return true;
+                }
+                return false;
+            });
+            if (removed.isEmpty()) {
+                return false;
+            }
+            sequence = appendRemoves(removed);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return true;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        lock.lock();
+        try {
+            tree.forEach(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        lock.lock();
+        try {
+            tree.forEachDescending(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        long sequence;
+        lock.lock();
+        try {
+            checkFailure();
+            List<T> removed = new ArrayList<>();
+            tree.removeByValueIf(value -> {
+                if (filter.test(value)) {
+                    removed.add(value);
+                    return true;
+                }
+                return false;
+            });
+            if (removed.isEmpty()) {
+                return false;
+            }
+            sequence = appendRemoves(removed);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return true;
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        lock.lock();
+        try {
+            tree.forEachValue(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        lock.lock();
+        try {
+            tree.forEachValueDescending(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the tree must not be changed while the spliterator is in use
+    @Override
+    public Spliterator<T> spliterator() {
+        lock.lock();
+        try {
+            return tree.spliterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("journal failed", failure);
+        }
+    }
+
+    private long appendRemoves(List<T> values) {
+        long sequence = 0;
+        for (T value : values) {
+            sequence = append(REMOVE, value);
+        }
+        return sequence;
+    }
+
+    // called under the lock, returns the sequence number of the record
+    private long append(byte op, T value) {
+        // zero bytes would replay as a real key
+        Objects.requireNonNull(value, "value");
+        int offset = reserve();
+        pending.put(offset, op);
+        codec.write(pending, offset + 1, value);
+        return seal(offset);
+    }
+
+    // a clear record has no value, its key bytes are zero
+    private long appendClear() {
+        int offset = reserve();
+        pending.put(offset, CLEAR);
+        for (int i = 1; i <= codec.width(); i++) {
+            pending.put(offset + i, (byte) 0);
+        }
+        return seal(offset);
+    }
+
+    // room for one record in the pending buffer, returns its offset
+    private int reserve() {
+        if (pending.remaining() < recordSize) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        return pending.position();
+    }
+
+    // checksums the record at the offset and counts it
+    private long seal(int offset) {
+        int checked = recordSize - CHECKSUM_SIZE;
+        crc.reset();
+        crc.update(pending.duplicate().position(offset).limit(offset + checked));
+        pending.putInt(offset + checked, (int) crc.getValue());
+        pending.position(offset + recordSize);
+        return ++appended;
+    }
+
+    // waits until the record is durable, the first caller to get the journal forces everything pending
+    private void commit(long sequence) {
+        ioLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (durable >= sequence) {
+                    return;
+                }
+                checkFailure();
+            } finally {
+                lock.unlock();
+            }
+            flush();
+            if (journalSize >= checkpointBytes) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // called with the io lock, writes and forces the pending records while new ones go to the other buffer
+    private void flush() throws IOException {
+        ByteBuffer batch;
+        long last;
+        lock.lock();
+        try {
+            if (pending.position() == 0) {
+                return;
+            }
+            batch = pending;
+            pending = spare;
+            spare = null;
+            last = appended;
+        } finally {
+            lock.unlock();
+        }
+        batch.flip();
+        int length = batch.remaining();
+        try {
+            writeFully(channel, batch, journalSize);
+            channel.force(false);
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                failure = e;
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        batch.clear();
+        lock.lock();
+        try {
+            spare = batch;
+            durable = last;
+            journalSize += length;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
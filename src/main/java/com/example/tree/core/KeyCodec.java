@@ -0,0 +1,48 @@
+package com.example.tree.core;
+
+import java.nio.ByteBuffer;
+
+public interface KeyCodec<T> {
+
+    KeyCodec<Integer> INT = new KeyCodec<>() {
+
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer value) {
+            buffer.putInt(offset, value);
+        }
+    };
+
+    KeyCodec<Long> LONG = new KeyCodec<>() {
+
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value);
+        }
+    };
+
+    int width();
+
+    T read(ByteBuffer buffer, int offset);
+
+    void write(ByteBuffer buffer, int offset, T value);
+}
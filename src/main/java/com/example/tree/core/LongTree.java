@@ -0,0 +1,92 @@
+package com.example.tree.core;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+public interface LongTree {
+
+    interface Node {
+
+        long getValue();
+
+        Node getParent();
+
+        Node getLeft();
+
+        Node getRight();
+    }
+
+    boolean isEmpty();
+
+    int size();
+
+    boolean contains(long value);
+
+    boolean add(long value);
+
+    Node find(long value);
+
+    int rank(long value);
+
+    Node select(int index);
+
+    int countBetween(long lo, long hi);
+
+    boolean remove(long value);
+
+    void clear();
+
+    Node root();
+
+    Node first();
+
+    Node last();
+
+    Node next(Node node);
+
+    Node prev(Node node);
+
+    Node floor(long value);
+
+    Node ceiling(long value);
+
+    Node lower(long value);
+
+    Node higher(long value);
+
+    void delete(Node node);
+
+    boolean removeIf(Predicate<? super Node> filter);
+
+    void forEach(Consumer<? super Node> action);
+
+    void forEachDescending(Consumer<? super Node> action);
+
+    boolean removeByValueIf(LongPredicate filter);
+
+    void forEachValue(LongConsumer action);
+
+    void forEachValueDescending(LongConsumer action);
+
+    default void forEachInRange(long lo, boolean loInclusive, long hi, boolean hiInclusive,
+                                Consumer<? super Node> action) {
+        Node node = loInclusive ? ceiling(lo) : higher(lo);
+        while (node != null) {
+            long value = node.getValue();
+            if (value > hi || (value == hi && !hiInclusive)) {
+                break;
+            }
+            action.accept(node);
+            node = next(node);
+        }
+    }
+
+    default void forEachValueInRange(long lo, boolean loInclusive, long hi, boolean hiInclusive,
+                                     LongConsumer action) {
+        forEachInRange(lo, loInclusive, hi, hiInclusive, node -> {
+            action.accept(node.getValue());
+        });
+    }
+}
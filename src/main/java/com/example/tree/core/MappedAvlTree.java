@@ -0,0 +1,298 @@
+package com.example.tree.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+// node records live in a memory-mapped file, so reopening the file gives back the tree without reading it.
+// Changes reach the file when the OS writes the pages back, force() makes them durable at a chosen point.
+public class MappedAvlTree<T> extends IndexedAvlTree<T> implements Closeable {
+
+    private static final int MAGIC = 0x41564c54;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int KEY_WIDTH_OFFSET = 8;
+    private static final int ROOT_OFFSET = 12;
+    private static final int TOP_OFFSET = 16;
+    private static final int FREE_OFFSET = 20;
+
+    private static final int LEFT_OFFSET = 0;
+    private static final int RIGHT_OFFSET = 4;
+    private static final int PARENT_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int BALANCE_OFFSET = 16;
+    private static final int KEY_OFFSET = 17;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FileChannel channel;
+
+    private final KeyCodec<T> codec;
+
+    private final boolean readOnly;
+
+    private final int recordSize;
+
+    private MappedByteBuffer buffer;
+
+    private int capacity;
+
+    private MappedAvlTree(FileChannel channel, KeyCodec<T> codec, Comparator<? super T> comparator,
+                          boolean readOnly) throws IOException {
+        super(comparator);
+        this.channel = channel;
+        this.codec = codec;
+        this.readOnly = readOnly;
+        this.recordSize = (KEY_OFFSET + codec.width() + 3) & ~3;
+        long length = channel.size();
+        if (length == 0) {
+            if (readOnly) {
+                throw new IOException("file is empty");
+            }
+            map(HEADER_SIZE + (long) INITIAL_CAPACITY * recordSize);
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(KEY_WIDTH_OFFSET, codec.width());
+            buffer.putInt(ROOT_OFFSET, NIL);
+            buffer.putInt(TOP_OFFSET, 1);
+            buffer.putInt(FREE_OFFSET, NIL);
+        } else {
+            if (length < HEADER_SIZE) {
+                throw new IOException("file is too short");
+            }
+            map(length);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("not a tree file");
+            }
+            if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("unsupported version " + buffer.getInt(VERSION_OFFSET));
+            }
+            if (buffer.getInt(KEY_WIDTH_OFFSET) != codec.width()) {
+                throw new IOException("key width mismatch");
+            }
+        }
+    }
+
+    public static <T> MappedAvlTree<T> open(Path path, KeyCodec<T> codec,
+                                            Comparator<? super T> comparator) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new MappedAvlTree<>(channel, codec, comparator, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // several processes may map the same file read-only, as long as none of them writes it
+    public static <T> MappedAvlTree<T> openReadOnly(Path path, KeyCodec<T> codec,
+                                                    Comparator<? super T> comparator) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedAvlTree<>(channel, codec, comparator, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void force() {
+        if (!readOnly) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    @Override
+    public boolean add(T value) {
+        checkWritable();
+        return super.add(value);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        checkWritable();
+        return super.remove(value);
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        super.clear();
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        checkWritable();
+        super.delete(node);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        checkWritable();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        checkWritable();
+        return super.removeByValueIf(filter);
+    }
+
+    @Override
+    int rootNode() {
+        return buffer.getInt(ROOT_OFFSET);
+    }
+
+    @Override
+    void setRootNode(int node) {
+        buffer.putInt(ROOT_OFFSET, node);
+    }
+
+    @Override
+    int left(int node) {
+        return buffer.getInt(offset(node) + LEFT_OFFSET);
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        buffer.putInt(offset(node) + LEFT_OFFSET, left);
+    }
+
+    @Override
+    int right(int node) {
+        return buffer.getInt(offset(node) + RIGHT_OFFSET);
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        buffer.putInt(offset(node) + RIGHT_OFFSET, right);
+    }
+
+    @Override
+    int parent(int node) {
+        return buffer.getInt(offset(node) + PARENT_OFFSET);
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        buffer.putInt(offset(node) + PARENT_OFFSET, parent);
+    }
+
+    @Override
+    int balance(int node) {
+        return buffer.get(offset(node) + BALANCE_OFFSET);
+    }
+
+    @Override
+    void setBalance(int node, int balance) {
+        buffer.put(offset(node) + BALANCE_OFFSET, (byte) balance);
+    }
+
+    @Override
+    int size(int node) {
+        return buffer.getInt(offset(node) + SIZE_OFFSET);
+    }
+
+    @Override
+    void setSize(int node, int size) {
+        buffer.putInt(offset(node) + SIZE_OFFSET, size);
+    }
+
+    @Override
+    T value(int node) {
+        return codec.read(buffer, offset(node) + KEY_OFFSET);
+    }
+
+    @Override
+    int allocate(T value, int parent) {
+        int node = buffer.getInt(FREE_OFFSET);
+        if (node != NIL) {
+            buffer.putInt(FREE_OFFSET, right(node));
+        } else {
+            node = buffer.getInt(TOP_OFFSET);
+            if (node > capacity) {
+                grow();
+            }
+            buffer.putInt(TOP_OFFSET, node + 1);
+        }
+        int offset = offset(node);
+        buffer.putInt(offset + LEFT_OFFSET, NIL);
+        buffer.putInt(offset + RIGHT_OFFSET, NIL);
+        buffer.putInt(offset + PARENT_OFFSET, parent);
+        buffer.putInt(offset + SIZE_OFFSET, 1);
+        buffer.put(offset + BALANCE_OFFSET, (byte) 0);
+        codec.write(buffer, offset + KEY_OFFSET, value);
+        return node;
+    }
+
+    @Override
+    void free(int node) {
+        int offset = offset(node);
+        buffer.putInt(offset + LEFT_OFFSET, NIL);
+        buffer.putInt(offset + RIGHT_OFFSET, buffer.getInt(FREE_OFFSET));
+        buffer.putInt(offset + PARENT_OFFSET, NIL);
+        buffer.putInt(offset + SIZE_OFFSET, 0);
+        buffer.put(offset + BALANCE_OFFSET, (byte) 0);
+        buffer.putInt(FREE_OFFSET, node);
+    }
+
+    @Override
+    void reset() {
+        buffer.putInt(ROOT_OFFSET, NIL);
+        buffer.putInt(TOP_OFFSET, 1);
+        buffer.putInt(FREE_OFFSET, NIL);
+    }
+
+    private int offset(int node) {
+        return HEADER_SIZE + (node - 1) * recordSize;
+    }
+
+    private void grow() {
+        long length = HEADER_SIZE + (long) Math.max(capacity * 2, INITIAL_CAPACITY) * recordSize;
+        if (length > Integer.MAX_VALUE) {
+            length = Integer.MAX_VALUE;
+            if (HEADER_SIZE + (long) (capacity + 1) * recordSize > length) {
+                throw new IllegalStateException("tree file is full");
+            }
+        }
+        try {
+            map(length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("file is too large to map");
+        }
+        buffer = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = (int) ((length - HEADER_SIZE) / recordSize);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("tree is read-only");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+// AvlTree that keeps an occurrence count in every node instead of a node per occurrence, and the total of the
+// counts of every subtree for the occurrence-weighted order statistics. The Tree methods see the distinct values,
+// add and remove change one occurrence, delete and removeIf drop a value with all its occurrences.
+// The set operations inherited from AvlTree work on distinct values, a value taken over from the other tree
+// gets one occurrence.
+public class MultisetAvlTree<T> extends AvlTree<T> {
+
+    public MultisetAvlTree(Comparator<? super T> comparator) {
+        super(comparator);
+    }
+
+    // number of occurrences of all values
+    public long totalCount() {
+        return total(node(root()));
+    }
+
+    public int count(T value) {
+        MultisetNode<T> node = node(find(value));
+        return node != null ? node.count : 0;
+    }
+
+    public int count(Node<T> node) {
+        return node(node).count;
+    }
+
+    @Override
+    public boolean add(T value) {
+        add(value, 1);
+        return true;
+    }
+
+    // returns the number of occurrences before the call
+    public int add(T value, int occurrences) {
+        if (occurrences < 1) {
+            throw new IllegalArgumentException("occurrences < 1");
+        }
+        Cursor<T> cursor = cursor();
+        if (cursor.insertHere(value)) {
+            if (occurrences > 1) {
+                setCount(node(cursor.node()), occurrences);
+            }
+            return 0;
+        }
+        MultisetNode<T> node = node(cursor.node());
+        int count = node.count;
+        setCount(node, Math.addExact(count, occurrences));
+        return count;
+    }
+
+    @Override
+    public boolean remove(T value) {
+        return remove(value, 1) > 0;
+    }
+
+    // removes up to the given number of occurrences, returns the number of occurrences before the call
+    public int remove(T value, int occurrences) {
+        if (occurrences < 1) {
+            throw new IllegalArgumentException("occurrences < 1");
+        }
+        MultisetNode<T> node = node(find(value));
+        if (node == null) {
+            return 0;
+        }
+        int count = node.count;
+        if (count > occurrences) {
+            setCount(node, count - occurrences);
+        } else {
+            delete(node);
+        }
+        return count;
+    }
+
+    // number of occurrences of the values less than the given one
+    public long weightedRank(T value) {
+        return weightedRank(value, false);
+    }
+
+    // the node of the value whose occurrences cover the index, counting occurrences from 0 in order
+    public Node<T> weightedSelect(long index) {
+        if (index < 0 || index >= totalCount()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + totalCount());
+        }
+        MultisetNode<T> node = node(root());
+        while (true) {
+            long leftTotal = total(node(node.left));
+            if (index < leftTotal) {
+                node = node(node.left);
+            } else if (index < leftTotal + node.count) {
+                return node;
+            } else {
+                index -= leftTotal + node.count;
+                node = node(node.right);
+            }
+        }
+    }
+
+    // number of occurrences of the values in [lo, hi]
+    public long weightedCountBetween(T lo, T hi) {
+        if (comparator().compare(lo, hi) > 0) {
+            return 0;
+        }
+        return weightedRank(hi, true) - weightedRank(lo, false);
+    }
+
+    public void forEachCount(ObjIntConsumer<? super T> action) {
+        forEach(node -> {
+            action.accept(node.getValue(), count(node));
+        });
+    }
+
+    @Override
+    AvlNode<T> newNode(T value, AvlNode<T> parent) {
+        return new MultisetNode<>(value, parent);
+    }
+
+    @Override
+    void augment(AvlNode<T> node) {
+        MultisetNode<T> n = node(node);
+        n.total = n.count + total(node(n.left)) + total(node(n.right));
+    }
+
+    // the running hash of AvlTree is the sum of the hash code of each value xor its count
+    @Override
+    int hashOf(AvlNode<T> node) {
+        return Objects.hashCode(node.value) ^ node(node).count;
+    }
+
+    private void setCount(MultisetNode<T> node, int count) {
+        int oldHash = hashOf(node);
+        node.count = count;
+        rehash(oldHash, hashOf(node));
+        for (AvlNode<T> p = node; p != null; p = p.parent) {
+            augment(p);
+        }
+    }
+
+    private long weightedRank(T value, boolean inclusive) {
+        Comparator<? super T> comparator = comparator();
+        long rank = 0;
+        MultisetNode<T> node = node(root());
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node(node.left);
+            } else if (cmp > 0) {
+                rank += total(node(node.left)) + node.count;
+                node = node(node.right);
+            } else {
+                rank += total(node(node.left));
+                return inclusive ? rank + node.count : rank;
+            }
+        }
+        return rank;
+    }
+
+    private static long total(MultisetNode<?> node) {
+        return node != null ? node.total : 0;
+    }
+
+    // every node of the tree comes from newNode
+    @SuppressWarnings("unchecked")
+    private MultisetNode<T> node(Node<T> node) {
+        return (MultisetNode<T>) node;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        MultisetAvlTree<T> tree = (MultisetAvlTree<T>) o;
+        Node<T> n1 = first();
+        Node<T> n2 = tree.first();
+        while (n1 != null) {
+            if (count(n1) != tree.count(n2)) {
+                return false;
+            }
+            n1 = next(n1);
+            n2 = tree.next(n2);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEachCount((value, count) -> {
+            sb.append(value);
+            if (count > 1) {
+                sb.append(" x ").append(count);
+            }
+            sb.append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static class MultisetNode<T> extends AvlNode<T> {
+
+        private int count = 1;
+
+        private long total = 1;
+
+        private MultisetNode(T value, AvlNode<T> parent) {
+            super(value, parent);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.tree.core;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+// covers a leading node followed by a whole subtree. trySplit hands the left subtree (and the leading node) off
+// and keeps the subtree root as the new leading node, so every split is O(1) and follows the tree structure.
+// Only the child links are used, so nodes without parent links can be traversed as well.
+class NodeSpliterator<T> implements Spliterator<T> {
+
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT;
+
+    private final Comparator<? super T> comparator;
+
+    // number of nodes in a subtree, null if the nodes do not know it
+    private final ToIntFunction<Tree.Node<T>> subtreeSize;
+
+    private Tree.Node<T> head;
+
+    private Tree.Node<T> node;
+
+    // pending nodes of the in-order walk, created by the first call that consumes the subtree
+    private Deque<Tree.Node<T>> stack;
+
+    private long estimate;
+
+    private boolean sized;
+
+    NodeSpliterator(Comparator<? super T> comparator, Tree.Node<T> root, int size,
+                    ToIntFunction<Tree.Node<T>> subtreeSize) {
+        this(comparator, subtreeSize, null, root, size, true);
+    }
+
+    private NodeSpliterator(Comparator<? super T> comparator, ToIntFunction<Tree.Node<T>> subtreeSize,
+                            Tree.Node<T> head, Tree.Node<T> node, long estimate, boolean sized) {
+        this.comparator = comparator;
+        this.subtreeSize = subtreeSize;
+        this.head = head;
+        this.node = node;
+        this.estimate = estimate;
+        this.sized = sized;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Tree.Node<T> node = this.node;
+        if (node == null) {
+            return null;
+        }
+        Tree.Node<T> left = node.getLeft();
+        if (left == null) {
+            return null;
+        }
+        long prefixEstimate;
+        if (subtreeSize != null) {
+            prefixEstimate = subtreeSize.applyAsInt(left) + (head != null ? 1 : 0);
+        } else {
+            prefixEstimate = estimate >>> 1;
+            sized = false;
+        }
+        NodeSpliterator<T> prefix = new NodeSpliterator<>(comparator, subtreeSize,
+                head, left, prefixEstimate, sized);
+        head = node;
+        this.node = node.getRight();
+        estimate = subtreeSize != null ? estimate - prefixEstimate : prefixEstimate;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (head != null) {
+            T value = head.getValue();
+            head = null;
+            estimate--;
+            action.accept(value);
+            return true;
+        }
+        if (stack == null) {
+            stack = new ArrayDeque<>();
+            pushLeft(node);
+            node = null;
+        }
+        Tree.Node<T> next = stack.poll();
+        if (next == null) {
+            return false;
+        }
+        pushLeft(next.getRight());
+        estimate--;
+        action.accept(next.getValue());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (head != null) {
+            T value = head.getValue();
+            head = null;
+            action.accept(value);
+        }
+        if (stack == null) {
+            stack = new ArrayDeque<>();
+            pushLeft(node);
+            node = null;
+        }
+        estimate = 0;
+        for (Tree.Node<T> next = stack.poll(); next != null; next = stack.poll()) {
+            pushLeft(next.getRight());
+            action.accept(next.getValue());
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(estimate, 0);
+    }
+
+    @Override
+    public int characteristics() {
+        return sized ? CHARACTERISTICS | SIZED | SUBSIZED : CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    private void pushLeft(Tree.Node<T> node) {
+        while (node != null) {
+            stack.push(node);
+            node = node.getLeft();
+        }
+    }
+}
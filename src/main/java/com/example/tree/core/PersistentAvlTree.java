@@ -0,0 +1,584 @@
+package com.example.tree.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// nodes are never changed once built, add and remove copy the path to the changed node and share everything else.
+// Readers take the current root without locking, writers are serialized and publish a new root when done.
+// Nodes have no parent links because a node is shared between versions, getParent() always returns null.
+public class PersistentAvlTree<T> implements Tree<T> {
+
+    private final Comparator<? super T> comparator;
+
+    private final boolean readOnly;
+
+    private volatile PersistentNode<T> root;
+
+    public PersistentAvlTree(Comparator<? super T> comparator) {
+        this(comparator, null, false);
+    }
+
+    private PersistentAvlTree(Comparator<? super T> comparator, PersistentNode<T> root, boolean readOnly) {
+        this.comparator = Objects.requireNonNull(comparator);
+        this.root = root;
+        this.readOnly = readOnly;
+    }
+
+    // the returned tree is the current version and does not change when this tree does
+    public PersistentAvlTree<T> snapshot() {
+        return new PersistentAvlTree<>(comparator, root, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public synchronized boolean add(T value) {
+        checkWritable();
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = insert(node, value);
+        if (result == node) {
+            return false;
+        }
+        root = result;
+        return true;
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        PersistentNode<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int rank(T value) {
+        return rank(root, value, false);
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        PersistentNode<T> node = root;
+        Objects.checkIndex(index, size(node));
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        if (comparator.compare(lo, hi) > 0) {
+            return 0;
+        }
+        PersistentNode<T> node = root;
+        return rank(node, hi, true) - rank(node, lo, false);
+    }
+
+    @Override
+    public synchronized boolean remove(T value) {
+        checkWritable();
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = delete(node, value);
+        if (result == node) {
+            return false;
+        }
+        root = result;
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        checkWritable();
+        root = null;
+    }
+
+    @Override
+    public Node<T> root() {
+        return root;
+    }
+
+    @Override
+    public Node<T> first() {
+        PersistentNode<T> node = root;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public Node<T> last() {
+        PersistentNode<T> node = root;
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    // without parent links the neighbours are found by value from the current root
+    @Override
+    public Node<T> next(Node<T> node) {
+        return higher(node.getValue());
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        return lower(node.getValue());
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = null;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                result = node;
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = null;
+        while (node != null) {
+            if (comparator.compare(value, node.value) > 0) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        PersistentNode<T> node = root;
+        PersistentNode<T> result = null;
+        while (node != null) {
+            if (comparator.compare(value, node.value) < 0) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    // a node of an older version removes the equal value from the current one
+    @Override
+    public void delete(Node<T> node) {
+        remove(node.getValue());
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super Node<T>> filter) {
+        checkWritable();
+        PersistentNode<T> node = root;
+        List<PersistentNode<T>> kept = new ArrayList<>(size(node));
+        forEach(node, false, n -> {
+            if (!filter.test(n)) {
+                kept.add(n);
+            }
+        });
+        if (kept.size() == size(node)) {
+            return false;
+        }
+        root = build(kept, 0, kept.size());
+        return true;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        forEach(root, false, action);
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        forEach(root, true, action);
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        return removeIf(node -> filter.test(node.getValue()));
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        forEach(root, false, node -> {
+            action.accept(node.value);
+        });
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        forEach(root, true, node -> {
+            action.accept(node.value);
+        });
+    }
+
+    // covers one version, so a stream stays consistent while writers go on
+    @Override
+    public Spliterator<T> spliterator() {
+        PersistentNode<T> node = root;
+        return new NodeSpliterator<>(comparator, node, size(node), subtree -> {
+            return ((PersistentNode<T>) subtree).size;
+        });
+    }
+
+    // walks one version, so the range stays consistent while writers go on
+    @Override
+    public void forEachInRange(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                               Consumer<? super Node<T>> action) {
+        Deque<PersistentNode<T>> stack = new ArrayDeque<>();
+        PersistentNode<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(node.value, lo);
+            if (cmp > 0 || (cmp == 0 && loInclusive)) {
+                stack.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        while (!stack.isEmpty()) {
+            node = stack.pop();
+            int cmp = comparator.compare(node.value, hi);
+            if (cmp > 0 || (cmp == 0 && !hiInclusive)) {
+                return;
+            }
+            action.accept(node);
+            for (PersistentNode<T> n = node.right; n != null; n = n.left) {
+                stack.push(n);
+            }
+        }
+    }
+
+    private PersistentNode<T> insert(PersistentNode<T> node, T value) {
+        if (node == null) {
+            return new PersistentNode<>(value, null, null);
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            PersistentNode<T> left = insert(node.left, value);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        } else if (cmp > 0) {
+            PersistentNode<T> right = insert(node.right, value);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        return node;
+    }
+
+    private PersistentNode<T> delete(PersistentNode<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            PersistentNode<T> left = delete(node.left, value);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        } else if (cmp > 0) {
+            PersistentNode<T> right = delete(node.right, value);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        PersistentNode<T> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.value, node.left, deleteFirst(node.right));
+    }
+
+    private static <T> PersistentNode<T> deleteFirst(PersistentNode<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteFirst(node.left), node.right);
+    }
+
+    // left and right are AVL trees whose heights differ by at most 2
+    private static <T> PersistentNode<T> balance(T value, PersistentNode<T> left, PersistentNode<T> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new PersistentNode<>(left.value, left.left,
+                        new PersistentNode<>(value, left.right, right));
+            }
+            PersistentNode<T> middle = left.right;
+            return new PersistentNode<>(middle.value,
+                    new PersistentNode<>(left.value, left.left, middle.left),
+                    new PersistentNode<>(value, middle.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new PersistentNode<>(right.value,
+                        new PersistentNode<>(value, left, right.left), right.right);
+            }
+            PersistentNode<T> middle = right.left;
+            return new PersistentNode<>(middle.value,
+                    new PersistentNode<>(value, left, middle.left),
+                    new PersistentNode<>(right.value, middle.right, right.right));
+        }
+        return new PersistentNode<>(value, left, right);
+    }
+
+    // the nodes are reused as values only, the new tree is built from fresh nodes
+    private static <T> PersistentNode<T> build(List<PersistentNode<T>> nodes, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        PersistentNode<T> left = build(nodes, from, middle);
+        PersistentNode<T> right = build(nodes, middle + 1, to);
+        return new PersistentNode<>(nodes.get(middle).value, left, right);
+    }
+
+    private int rank(PersistentNode<T> node, T value, boolean inclusive) {
+        int rank = 0;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                rank += size(node.left);
+                return inclusive ? rank + 1 : rank;
+            }
+        }
+        return rank;
+    }
+
+    private static <T> void forEach(PersistentNode<T> node, boolean descending,
+                                    Consumer<? super PersistentNode<T>> action) {
+        Deque<PersistentNode<T>> stack = new ArrayDeque<>();
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = descending ? node.right : node.left;
+            }
+            node = stack.pop();
+            action.accept(node);
+            node = descending ? node.left : node.right;
+        }
+    }
+
+    private static int height(PersistentNode<?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static int size(PersistentNode<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("snapshot is read-only");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        @SuppressWarnings("unchecked")
+        PersistentAvlTree<T> tree = (PersistentAvlTree<T>) o;
+        PersistentNode<T> node = root;
+        PersistentNode<T> other = tree.root;
+        if (node == other) {
+            return true;
+        }
+        if (size(node) != size(other)) {
+            return false;
+        }
+        List<T> values = new ArrayList<>(size(node));
+        forEach(node, false, n -> {
+            values.add(n.value);
+        });
+        int[] index = {0};
+        boolean[] equal = {true};
+        forEach(other, false, n -> {
+            if (equal[0] && !Objects.equals(values.get(index[0]++), n.value)) {
+                equal[0] = false;
+            }
+        });
+        return equal[0];
+    }
+
+    @Override
+    public int hashCode() {
+        int[] result = {1};
+        forEach(root, false, node -> {
+            result[0] = 31 * result[0] + node.hashCode();
+        });
+        return result[0];
+    }
+
+    @Override
+    public String toString() {
+        PersistentNode<T> node = root;
+        if (node == null) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node, false, n -> {
+            sb.append(n).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+
+    private static final class PersistentNode<T> implements Node<T> {
+
+        private final T value;
+
+        private final PersistentNode<T> left;
+
+        private final PersistentNode<T> right;
+
+        private final int height;
+
+        private final int size;
+
+        private PersistentNode(T value, PersistentNode<T> left, PersistentNode<T> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        @Override
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public Node<T> getParent() {
+            return null;
+        }
+
+        @Override
+        public Node<T> getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node<T> getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PersistentNode<?> node = (PersistentNode<?>) o;
+            return Objects.equals(value, node.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value != null ? value.hashCode() : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            sb.append(value);
+            if (left != null) {
+                sb.append(",left");
+            }
+            if (right != null) {
+                sb.append(",right");
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
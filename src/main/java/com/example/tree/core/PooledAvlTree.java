@@ -0,0 +1,178 @@
+package com.example.tree.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// nodes live in parallel arrays indexed by node id, freed ids are reused through a free list linked by right
+public class PooledAvlTree<T> extends IndexedAvlTree<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] left;
+
+    private int[] right;
+
+    private int[] parent;
+
+    private int[] size;
+
+    private byte[] balance;
+
+    private Object[] values;
+
+    private int root = NIL;
+
+    // the next never used id
+    private int top = 1;
+
+    private int free = NIL;
+
+    public PooledAvlTree(Comparator<? super T> comparator) {
+        this(comparator, DEFAULT_CAPACITY);
+    }
+
+    public PooledAvlTree(Comparator<? super T> comparator, int initialCapacity) {
+        super(comparator);
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        allocateArrays(initialCapacity + 1);
+    }
+
+    public int capacity() {
+        return values.length - 1;
+    }
+
+    public void trimToSize() {
+        if (free == NIL) {
+            resize(top);
+        }
+    }
+
+    @Override
+    int rootNode() {
+        return root;
+    }
+
+    @Override
+    void setRootNode(int node) {
+        root = node;
+    }
+
+    @Override
+    int left(int node) {
+        return left[node];
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        this.left[node] = left;
+    }
+
+    @Override
+    int right(int node) {
+        return right[node];
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        this.right[node] = right;
+    }
+
+    @Override
+    int parent(int node) {
+        return parent[node];
+    }
+
+    @Override
+    void setParent(int node, int parent) {
+        this.parent[node] = parent;
+    }
+
+    @Override
+    int balance(int node) {
+        return balance[node];
+    }
+
+    @Override
+    void setBalance(int node, int balance) {
+        this.balance[node] = (byte) balance;
+    }
+
+    @Override
+    int size(int node) {
+        return size[node];
+    }
+
+    @Override
+    void setSize(int node, int size) {
+        this.size[node] = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T value(int node) {
+        return (T) values[node];
+    }
+
+    @Override
+    int allocate(T value, int parent) {
+        int node = free;
+        if (node != NIL) {
+            free = right[node];
+        } else {
+            if (top == values.length) {
+                resize(top + (top >> 1) + 1);
+            }
+            node = top++;
+        }
+        left[node] = NIL;
+        right[node] = NIL;
+        this.parent[node] = parent;
+        balance[node] = 0;
+        size[node] = 1;
+        values[node] = value;
+        return node;
+    }
+
+    @Override
+    void free(int node) {
+        values[node] = null;
+        left[node] = NIL;
+        parent[node] = NIL;
+        balance[node] = 0;
+        size[node] = 0;
+        right[node] = free;
+        free = node;
+    }
+
+    @Override
+    void reset() {
+        Arrays.fill(values, 1, top, null);
+        Arrays.fill(size, 1, top, 0);
+        root = NIL;
+        top = 1;
+        free = NIL;
+    }
+
+    private void allocateArrays(int length) {
+        left = new int[length];
+        right = new int[length];
+        parent = new int[length];
+        size = new int[length];
+        balance = new byte[length];
+        values = new Object[length];
+    }
+
+    private void resize(int length) {
+        if (length < 0) {
+            throw new IllegalStateException("tree is too large");
+        }
+        left = Arrays.copyOf(left, length);
+        right = Arrays.copyOf(right, length);
+        parent = Arrays.copyOf(parent, length);
+        size = Arrays.copyOf(size, length);
+        balance = Arrays.copyOf(balance, length);
+        values = Arrays.copyOf(values, length);
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.tree.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+class SubTree<T> implements Tree<T> {
+
+    private final Tree<T> tree;
+
+    private final boolean fromStart;
+
+    private final T lo;
+
+    private final boolean loInclusive;
+
+    private final boolean toEnd;
+
+    private final T hi;
+
+    private final boolean hiInclusive;
+
+    SubTree(Tree<T> tree,
+            boolean fromStart, T lo, boolean loInclusive,
+            boolean toEnd, T hi, boolean hiInclusive) {
+        if (!fromStart && !toEnd && tree.comparator().compare(lo, hi) > 0) {
+            throw new IllegalArgumentException("lo > hi");
+        }
+        this.tree = tree;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return first() == null;
+    }
+
+    @Override
+    public int size() {
+        Node<T> first = first();
+        if (first == null) {
+            return 0;
+        }
+        return tree.countBetween(first.getValue(), last().getValue());
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return inRange(value) && tree.contains(value);
+    }
+
+    @Override
+    public boolean add(T value) {
+        if (!inRange(value)) {
+            throw new IllegalArgumentException("value out of range");
+        }
+        return tree.add(value);
+    }
+
+    @Override
+    public Node<T> find(T value) {
+        return inRange(value) ? tree.find(value) : null;
+    }
+
+    @Override
+    public int rank(T value) {
+        if (tooLow(value)) {
+            return 0;
+        }
+        if (tooHigh(value)) {
+            return size();
+        }
+        Node<T> first = first();
+        if (first == null) {
+            return 0;
+        }
+        return tree.rank(value) - tree.rank(first.getValue());
+    }
+
+    @Override
+    public Node<T> select(int index) {
+        Objects.checkIndex(index, size());
+        return tree.select(tree.rank(first().getValue()) + index);
+    }
+
+    @Override
+    public int countBetween(T lo, T hi) {
+        Node<T> first = ceiling(lo);
+        Node<T> last = floor(hi);
+        if (first == null || last == null || comparator().compare(first.getValue(), last.getValue()) > 0) {
+            return 0;
+        }
+        return tree.countBetween(first.getValue(), last.getValue());
+    }
+
+    @Override
+    public boolean remove(T value) {
+        return inRange(value) && tree.remove(value);
+    }
+
+    @Override
+    public void clear() {
+        Node<T> first = first();
+        if (first != null) {
+            tree.removeRange(first.getValue(), true, last().getValue(), true);
+        }
+    }
+
+    @Override
+    public Node<T> root() {
+        Node<T> node = tree.root();
+        while (node != null) {
+            if (tooLow(node.getValue())) {
+                node = node.getRight();
+            } else if (tooHigh(node.getValue())) {
+                node = node.getLeft();
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Node<T> first() {
+        Node<T> node = fromStart
+                ? tree.first()
+                : loInclusive ? tree.ceiling(lo) : tree.higher(lo);
+        return node != null && !tooHigh(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public Node<T> last() {
+        Node<T> node = toEnd
+                ? tree.last()
+                : hiInclusive ? tree.floor(hi) : tree.lower(hi);
+        return node != null && !tooLow(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public Node<T> next(Node<T> node) {
+        Node<T> next = tree.next(node);
+        return next != null && !tooHigh(next.getValue()) ? next : null;
+    }
+
+    @Override
+    public Node<T> prev(Node<T> node) {
+        Node<T> prev = tree.prev(node);
+        return prev != null && !tooLow(prev.getValue()) ? prev : null;
+    }
+
+    @Override
+    public Node<T> floor(T value) {
+        if (tooLow(value)) {
+            return null;
+        }
+        if (tooHigh(value)) {
+            return last();
+        }
+        Node<T> node = tree.floor(value);
+        return node != null && !tooLow(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public Node<T> ceiling(T value) {
+        if (tooHigh(value)) {
+            return null;
+        }
+        if (tooLow(value)) {
+            return first();
+        }
+        Node<T> node = tree.ceiling(value);
+        return node != null && !tooHigh(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public Node<T> lower(T value) {
+        if (tooLow(value)) {
+            return null;
+        }
+        if (tooHigh(value)) {
+            return last();
+        }
+        Node<T> node = tree.lower(value);
+        return node != null && !tooLow(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public Node<T> higher(T value) {
+        if (tooHigh(value)) {
+            return null;
+        }
+        if (tooLow(value)) {
+            return first();
+        }
+        Node<T> node = tree.higher(value);
+        return node != null && !tooHigh(node.getValue()) ? node : null;
+    }
+
+    @Override
+    public void delete(Node<T> node) {
+        tree.delete(node);
+    }
+
+    // the filter sees every node before the tree changes, handles of some trees (BTree) do not survive a change,
+    // so the values are collected first and every one is deleted through a handle found again by its value
+    @Override
+    public boolean removeIf(Predicate<? super Node<T>> filter) {
+        List<T> removed = new ArrayList<>();
+        forEach(node -> {
+            if (filter.test(node)) {
+                removed.add(node.getValue());
+            }
+        });
+        for (T value : removed) {
+            Node<T> node = tree.find(value);
+            if (node != null) {
+                tree.delete(node);
+            }
+        }
+        return !removed.isEmpty();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Node<T>> action) {
+        for (Node<T> node = first(); node != null; node = next(node)) {
+            action.accept(node);
+        }
+    }
+
+    @Override
+    public void forEachDescending(Consumer<? super Node<T>> action) {
+        for (Node<T> node = last(); node != null; node = prev(node)) {
+            action.accept(node);
+        }
+    }
+
+    @Override
+    public boolean removeByValueIf(Predicate<? super T> filter) {
+        return removeIf(node -> {
+            return filter.test(node.getValue());
+        });
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super T> action) {
+        forEach(node -> {
+            action.accept(node.getValue());
+        });
+    }
+
+    @Override
+    public void forEachValueDescending(Consumer<? super T> action) {
+        forEachDescending(node -> {
+            action.accept(node.getValue());
+        });
+    }
+
+    private boolean tooLow(T value) {
+        if (fromStart) {
+            return false;
+        }
+        int cmp = tree.comparator().compare(value, lo);
+        return cmp < 0 || (cmp == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(T value) {
+        if (toEnd) {
+            return false;
+        }
+        int cmp = tree.comparator().compare(value, hi);
+        return cmp > 0 || (cmp == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(T value) {
+        return !tooLow(value) && !tooHigh(value);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        forEach(node -> {
+            sb.append(node).append(',').append(' ');
+        });
+        sb.setLength(sb.length() - 2);
+        sb.append(']');
+        return sb.toString();
+    }
+}
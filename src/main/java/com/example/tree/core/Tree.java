@@ -1,8 +1,11 @@
 package com.example.tree.core;
 
 import java.util.Comparator;
+import java.util.Spliterator;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface Tree<T> {
 
@@ -17,16 +20,40 @@ public interface Tree<T> {
         Node<T> getRight();
     }
 
+    // remembers a position in the tree, so that a search for a nearby value does not start from the root
+    interface Cursor<T> {
+
+        // null before the first search and on an empty tree
+        Node<T> node();
+
+        // moves to the node with the value, or if there is none to a neighbour of it, and tells whether it was found
+        boolean seek(T value);
+
+        // adds the value if it is missing and moves to its node
+        boolean insertHere(T value);
+
+        // deletes the current node and moves to its successor, or its predecessor if it was the last one
+        void removeHere();
+    }
+
     Comparator<? super T> comparator();
 
     boolean isEmpty();
 
+    int size();
+
     boolean contains(T value);
 
     boolean add(T value);
 
     Node<T> find(T value);
 
+    int rank(T value);
+
+    Node<T> select(int index);
+
+    int countBetween(T lo, T hi);
+
     boolean remove(T value);
 
     void clear();
@@ -41,6 +68,14 @@ public interface Tree<T> {
 
     Node<T> prev(Node<T> node);
 
+    Node<T> floor(T value);
+
+    Node<T> ceiling(T value);
+
+    Node<T> lower(T value);
+
+    Node<T> higher(T value);
+
     void delete(Node<T> node);
 
     boolean removeIf(Predicate<? super Node<T>> filter);
@@ -54,4 +89,66 @@ public interface Tree<T> {
     void forEachValue(Consumer<? super T> action);
 
     void forEachValueDescending(Consumer<? super T> action);
+
+    default void forEachInRange(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                                Consumer<? super Node<T>> action) {
+        Comparator<? super T> comparator = comparator();
+        Node<T> node = loInclusive ? ceiling(lo) : higher(lo);
+        while (node != null) {
+            int cmp = comparator.compare(node.getValue(), hi);
+            if (cmp > 0 || (cmp == 0 && !hiInclusive)) {
+                break;
+            }
+            action.accept(node);
+            node = next(node);
+        }
+    }
+
+    default void forEachValueInRange(T lo, boolean loInclusive, T hi, boolean hiInclusive,
+                                     Consumer<? super T> action) {
+        forEachInRange(lo, loInclusive, hi, hiInclusive, node -> {
+            action.accept(node.getValue());
+        });
+    }
+
+    // immutable copy for lookups only, later changes to the tree are not seen by it
+    default FrozenTree<T> freeze() {
+        return new FrozenTree<>(this);
+    }
+
+    default Cursor<T> cursor() {
+        return new TreeCursor<>(this);
+    }
+
+    default Spliterator<T> spliterator() {
+        return new TreeSpliterator<>(this);
+    }
+
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    default Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    default boolean removeRange(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        return subTree(lo, loInclusive, hi, hiInclusive).removeIf(node -> true);
+    }
+
+    default boolean removeRange(T lo, T hi) {
+        return removeRange(lo, true, hi, true);
+    }
+
+    default Tree<T> headTree(T hi, boolean inclusive) {
+        return new SubTree<>(this, true, null, false, false, hi, inclusive);
+    }
+
+    default Tree<T> tailTree(T lo, boolean inclusive) {
+        return new SubTree<>(this, false, lo, inclusive, true, null, false);
+    }
+
+    default Tree<T> subTree(T lo, boolean loInclusive, T hi, boolean hiInclusive) {
+        return new SubTree<>(this, false, lo, loInclusive, false, hi, hiInclusive);
+    }
 }
@@ -0,0 +1,66 @@
+package com.example.tree.core;
+
+import java.util.Arrays;
+
+// The counters behind TreeStats. ENABLED is a static final read once, so the JIT treats it as a constant
+// and drops every block guarded by it when statistics are off. Turn them on with -Dcom.example.tree.stats=true.
+// The counters are plain fields, the parallel operations may lose some of their counts.
+final class TreeCounters {
+
+    static final boolean ENABLED = Boolean.getBoolean("com.example.tree.stats");
+
+    // no AVL tree of at most 2^31 nodes is higher than this
+    static final int MAX_DEPTH = 64;
+
+    long comparisons;
+
+    long singleRotations;
+
+    long doubleRotations;
+
+    long insertionFixes;
+
+    long insertionFixSteps;
+
+    long deletionFixes;
+
+    long deletionFixSteps;
+
+    int maxHeight;
+
+    long searches;
+
+    final long[] searchDepths = new long[MAX_DEPTH + 1];
+
+    void search(int depth) {
+        searches++;
+        searchDepths[Math.min(depth, MAX_DEPTH)]++;
+    }
+
+    // the depth of a new node is the height of its path before the tree is rebalanced
+    void insertion(int depth) {
+        if (depth > maxHeight) {
+            maxHeight = depth;
+        }
+    }
+
+    void reset() {
+        comparisons = 0;
+        singleRotations = 0;
+        doubleRotations = 0;
+        insertionFixes = 0;
+        insertionFixSteps = 0;
+        deletionFixes = 0;
+        deletionFixSteps = 0;
+        maxHeight = 0;
+        searches = 0;
+        Arrays.fill(searchDepths, 0);
+    }
+
+    TreeStats snapshot(int size, int height) {
+        return new TreeStats(size, height, Math.max(maxHeight, height), comparisons,
+                singleRotations, doubleRotations,
+                insertionFixes, insertionFixSteps, deletionFixes, deletionFixSteps,
+                searches, searchDepths.clone());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.tree.core;
+
+// a cursor for any tree, every search starts from the root
+class TreeCursor<T> implements Tree.Cursor<T> {
+
+    private final Tree<T> tree;
+
+    private Tree.Node<T> node;
+
+    TreeCursor(Tree<T> tree) {
+        this.tree = tree;
+    }
+
+    @Override
+    public Tree.Node<T> node() {
+        return node;
+    }
+
+    @Override
+    public boolean seek(T value) {
+        Tree.Node<T> found = tree.find(value);
+        if (found != null) {
+            node = found;
+            return true;
+        }
+        Tree.Node<T> ceiling = tree.ceiling(value);
+        node = ceiling != null ? ceiling : tree.floor(value);
+        return false;
+    }
+
+    @Override
+    public boolean insertHere(T value) {
+        boolean added = tree.add(value);
+        node = tree.find(value);
+        return added;
+    }
+
+    @Override
+    public void removeHere() {
+        Tree.Node<T> current = node;
+        if (current == null) {
+            throw new IllegalStateException("no current node");
+        }
+        Tree.Node<T> next = tree.next(current);
+        if (next == null) {
+            next = tree.prev(current);
+        }
+        if (next == null) {
+            tree.delete(current);
+            node = null;
+            return;
+        }
+        // handles of some trees (BTree) do not survive a change, the neighbour is found again by its value
+        T value = next.getValue();
+        tree.delete(current);
+        node = tree.find(value);
+    }
+}
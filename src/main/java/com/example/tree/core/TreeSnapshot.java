@@ -0,0 +1,287 @@
+package com.example.tree.core;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// binary file with the values of a tree in order: a header, the values, and a CRC32C of everything before it.
+// Values of KeyCodec.INT and KeyCodec.LONG are stored as zigzag varint differences to the previous value, values
+// of other codecs at their fixed width. Loading maps the file and builds the tree from the sorted values in O(n).
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x54534e50;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int ENCODING_OFFSET = 8;
+    private static final int KEY_WIDTH_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int CHECKSUM_SIZE = 4;
+
+    private static final int FIXED = 0;
+    private static final int INT_DELTA = 1;
+    private static final int LONG_DELTA = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // longest varint of a long
+    private static final int MAX_VARINT = 10;
+
+    private TreeSnapshot() {
+    }
+
+    // writes a temporary file next to the target and moves it over the target once it is complete and forced,
+    // the move is durable when this returns
+    public static <T> void save(Tree<T> tree, KeyCodec<T> codec, Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(tree, codec, channel);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    // makes renames and new files in the directory durable. Windows cannot open a directory as a channel,
+    // NTFS journals the change of the directory itself
+    static void forceDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // the values must be in the order of the comparator, as they are when the file was written from such a tree
+    public static <T> AvlTree<T> load(Path path, KeyCodec<T> codec,
+                                      Comparator<? super T> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE + CHECKSUM_SIZE) {
+                throw new IOException("file is too short");
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("file is too large to map");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("not a tree snapshot");
+            }
+            if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("unsupported version " + buffer.getInt(VERSION_OFFSET));
+            }
+            int encoding = buffer.getInt(ENCODING_OFFSET);
+            if (encoding != encoding(codec) || buffer.getInt(KEY_WIDTH_OFFSET) != codec.width()) {
+                throw new IOException("key codec mismatch");
+            }
+            long count = buffer.getLong(COUNT_OFFSET);
+            if (count < 0 || count > Integer.MAX_VALUE) {
+                throw new IOException("bad value count " + count);
+            }
+            int end = (int) length - CHECKSUM_SIZE;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("checksum mismatch");
+            }
+            buffer.position(HEADER_SIZE).limit(end);
+            Decoder<T> values = new Decoder<>(buffer, codec, encoding, (int) count);
+            AvlTree<T> tree = AvlTree.fromSorted(values, (int) count, comparator);
+            if (buffer.hasRemaining()) {
+                throw new IOException("trailing bytes after the values");
+            }
+            return tree;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("truncated values", e);
+        }
+    }
+
+    private static <T> void write(Tree<T> tree, KeyCodec<T> codec, FileChannel channel) throws IOException {
+        int encoding = encoding(codec);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(ENCODING_OFFSET, encoding);
+        buffer.putInt(KEY_WIDTH_OFFSET, codec.width());
+        buffer.putLong(COUNT_OFFSET, tree.size());
+        buffer.position(HEADER_SIZE);
+        Encoder<T> encoder = new Encoder<>(channel, buffer, codec, encoding);
+        tree.forEachValue(encoder);
+        if (encoder.failure != null) {
+            throw encoder.failure;
+        }
+        encoder.flush();
+        buffer.putInt((int) encoder.crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int encoding(KeyCodec<?> codec) {
+        if (codec == KeyCodec.INT) {
+            return INT_DELTA;
+        }
+        if (codec == KeyCodec.LONG) {
+            return LONG_DELTA;
+        }
+        return FIXED;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IndexOutOfBoundsException("varint is too long");
+    }
+
+    // forEachValue takes no checked exceptions, the first failure stops the writes and is rethrown afterwards
+    private static class Encoder<T> implements Consumer<T> {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        private final KeyCodec<T> codec;
+
+        private final int encoding;
+
+        private final int recordSize;
+
+        private final CRC32C crc = new CRC32C();
+
+        private long previous;
+
+        private IOException failure;
+
+        private Encoder(FileChannel channel, ByteBuffer buffer, KeyCodec<T> codec, int encoding) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.codec = codec;
+            this.encoding = encoding;
+            this.recordSize = encoding == FIXED ? codec.width() : MAX_VARINT;
+        }
+
+        @Override
+        public void accept(T value) {
+            if (failure != null) {
+                return;
+            }
+            if (buffer.remaining() < recordSize) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    failure = e;
+                    return;
+                }
+            }
+            if (encoding == INT_DELTA) {
+                int current = (Integer) value;
+                int delta = current - (int) previous;
+                putVarint(buffer, Integer.toUnsignedLong((delta << 1) ^ (delta >> 31)));
+                previous = current;
+            } else if (encoding == LONG_DELTA) {
+                long current = (Long) value;
+                long delta = current - previous;
+                putVarint(buffer, (delta << 1) ^ (delta >> 63));
+                previous = current;
+            } else {
+                codec.write(buffer, buffer.position(), value);
+                buffer.position(buffer.position() + recordSize);
+            }
+        }
+
+        // writes out the buffered bytes, the checksum covers them on the way
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static class Decoder<T> implements Iterator<T> {
+
+        private final ByteBuffer buffer;
+
+        private final KeyCodec<T> codec;
+
+        private final int encoding;
+
+        private int remaining;
+
+        private long previous;
+
+        private Decoder(ByteBuffer buffer, KeyCodec<T> codec, int encoding, int count) {
+            this.buffer = buffer;
+            this.codec = codec;
+            this.encoding = encoding;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        // the encoding was checked against the codec, so T is Integer or Long for the delta encodings
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            if (encoding == INT_DELTA) {
+                int zigzag = (int) getVarint(buffer);
+                int current = (int) previous + ((zigzag >>> 1) ^ -(zigzag & 1));
+                previous = current;
+                return (T) Integer.valueOf(current);
+            }
+            if (encoding == LONG_DELTA) {
+                long zigzag = getVarint(buffer);
+                long current = previous + ((zigzag >>> 1) ^ -(zigzag & 1));
+                previous = current;
+                return (T) Long.valueOf(current);
+            }
+            int position = buffer.position();
+            T value = codec.read(buffer, position);
+            buffer.position(position + codec.width());
+            return value;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.tree.core;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+// walks any tree with first() and next(), splits hand off growing batches copied into arrays
+class TreeSpliterator<T> implements Spliterator<T> {
+
+    private static final int BATCH_UNIT = 1 << 10;
+
+    private static final int MAX_BATCH = 1 << 25;
+
+    private final Tree<T> tree;
+
+    private Tree.Node<T> node;
+
+    private boolean started;
+
+    private long estimate;
+
+    private int batch;
+
+    TreeSpliterator(Tree<T> tree) {
+        this.tree = tree;
+        this.estimate = tree.size();
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (estimate <= 1) {
+            return null;
+        }
+        int n = (int) Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), estimate);
+        Object[] values = new Object[n];
+        int count = 0;
+        while (count < n && tryAdvance(value -> {})) {
+            values[count++] = node.getValue();
+        }
+        if (count == 0) {
+            return null;
+        }
+        batch = count;
+        // the array half does not report SORTED, its comparator could not be told apart from natural ordering
+        return Spliterators.spliterator(values, 0, count, ORDERED | DISTINCT);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (started && node == null) {
+            return false;
+        }
+        Tree.Node<T> next = started ? tree.next(node) : tree.first();
+        started = true;
+        if (next == null) {
+            node = null;
+            estimate = 0;
+            return false;
+        }
+        node = next;
+        estimate--;
+        action.accept(next.getValue());
+        return true;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(estimate, 0);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | SIZED;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return tree.comparator();
+    }
+}
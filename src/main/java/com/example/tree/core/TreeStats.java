@@ -0,0 +1,132 @@
+package com.example.tree.core;
+
+// a snapshot of the statistics a tree collects while -Dcom.example.tree.stats=true is set
+public final class TreeStats {
+
+    private final int size;
+
+    private final int height;
+
+    private final int maxHeight;
+
+    private final long comparisons;
+
+    private final long singleRotations;
+
+    private final long doubleRotations;
+
+    private final long insertionFixes;
+
+    private final long insertionFixSteps;
+
+    private final long deletionFixes;
+
+    private final long deletionFixSteps;
+
+    private final long searches;
+
+    private final long[] searchDepths;
+
+    TreeStats(int size, int height, int maxHeight, long comparisons,
+              long singleRotations, long doubleRotations,
+              long insertionFixes, long insertionFixSteps, long deletionFixes, long deletionFixSteps,
+              long searches, long[] searchDepths) {
+        this.size = size;
+        this.height = height;
+        this.maxHeight = maxHeight;
+        this.comparisons = comparisons;
+        this.singleRotations = singleRotations;
+        this.doubleRotations = doubleRotations;
+        this.insertionFixes = insertionFixes;
+        this.insertionFixSteps = insertionFixSteps;
+        this.deletionFixes = deletionFixes;
+        this.deletionFixSteps = deletionFixSteps;
+        this.searches = searches;
+        this.searchDepths = searchDepths;
+    }
+
+    public static boolean isEnabled() {
+        return TreeCounters.ENABLED;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // the greatest height reached since the last reset, counting paths before they were rebalanced
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    public long getSingleRotations() {
+        return singleRotations;
+    }
+
+    public long getDoubleRotations() {
+        return doubleRotations;
+    }
+
+    // number of rebalancing walks after insertions
+    public long getInsertionFixes() {
+        return insertionFixes;
+    }
+
+    // number of nodes visited by those walks
+    public long getInsertionFixSteps() {
+        return insertionFixSteps;
+    }
+
+    public long getDeletionFixes() {
+        return deletionFixes;
+    }
+
+    public long getDeletionFixSteps() {
+        return deletionFixSteps;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    // element i is the number of searches that visited i nodes, the last element also counts deeper ones
+    public long[] getSearchDepths() {
+        return searchDepths.clone();
+    }
+
+    public double getAverageSearchDepth() {
+        if (searches == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int depth = 0; depth < searchDepths.length; depth++) {
+            total += depth * searchDepths[depth];
+        }
+        return (double) total / searches;
+    }
+
+    @Override
+    public String toString() {
+        return "TreeStats{" +
+                "size=" + size +
+                ", height=" + height +
+                ", maxHeight=" + maxHeight +
+                ", comparisons=" + comparisons +
+                ", singleRotations=" + singleRotations +
+                ", doubleRotations=" + doubleRotations +
+                ", insertionFixes=" + insertionFixes +
+                ", insertionFixSteps=" + insertionFixSteps +
+                ", deletionFixes=" + deletionFixes +
+                ", deletionFixSteps=" + deletionFixSteps +
+                ", searches=" + searches +
+                ", averageSearchDepth=" + getAverageSearchDepth() +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.tree.core;
+
+// The statistics of one tree as exposed through JMX, see Trees.registerStats. Each attribute is read from the
+// latest published snapshot, a client reading several of them may see two snapshots, Stats holds one whole.
+public interface TreeStatsMXBean {
+
+    TreeStats getStats();
+
+    int getSize();
+
+    int getHeight();
+
+    int getMaxHeight();
+
+    long getComparisons();
+
+    long getSingleRotations();
+
+    long getDoubleRotations();
+
+    long getInsertionFixes();
+
+    long getInsertionFixSteps();
+
+    long getDeletionFixes();
+
+    long getDeletionFixSteps();
+
+    long getSearches();
+
+    long[] getSearchDepths();
+
+    double getAverageSearchDepth();
+
+    void reset();
+}
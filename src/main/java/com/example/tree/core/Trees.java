@@ -1,8 +1,29 @@
 package com.example.tree.core;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 public class Trees {
+    // The tree must collect statistics, see TreeStats.isEnabled(). The MXBean shows what the tree last published
+    // with AvlTree.publishStats, starting with a snapshot taken here. Taking a snapshot walks the tree, so this
+    // and every publication must not run while the tree is changed on another thread: call them from the thread
+    // that changes the tree. A plain AvlTree changed by several threads cannot be registered safely.
+    public static ObjectName registerStats(AvlTree<?> tree, String name) throws JMException {
+        if (!TreeStats.isEnabled()) {
+            throw new IllegalStateException("tree statistics are disabled");
+        }
+        tree.publishStats();
+        ObjectName objectName = new ObjectName("com.example.tree:type=AvlTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new AvlTreeStats(tree), objectName);
+        return objectName;
+    }
+
+    public static void unregisterStats(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
     public static <T> List<List<Tree.Node<T>>> levels(Tree.Node<T> root) {
         List<List<Tree.Node<T>>> levels = new ArrayList<>();
         Deque<Map.Entry<Tree.Node<T>, Integer>> stack = new ArrayDeque<>();
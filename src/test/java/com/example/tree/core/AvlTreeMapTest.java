@@ -0,0 +1,159 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AvlTreeMapTest {
+
+    @Test
+    void putIfAbsentFillsANullPayload() {
+        AvlTreeMap<Integer, String> map = new AvlTreeMap<>(Integer::compare);
+        map.add(1);
+        assertNull(map.get(1));
+        assertNull(map.putIfAbsent(1, "a"));
+        assertEquals("a", map.get(1));
+        assertEquals("a", map.putIfAbsent(1, "b"));
+        assertEquals("a", map.get(1));
+        assertNull(map.putIfAbsent(2, "c"));
+        assertEquals("c", map.get(2));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void matchesTreeMap() {
+        Random random = new Random(25);
+        AvlTreeMap<Integer, String> map = new AvlTreeMap<>(Integer::compare);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(300);
+            String value = "v" + random.nextInt(50);
+            switch (random.nextInt(7)) {
+                case 0:
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(expected.get(key), map.get(key));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), map.getAndRemove(key));
+                    break;
+                case 3:
+                    assertEquals(expected.compute(key, (k, old) -> old == null ? value : old.length() > 2 ? null : old + "x"),
+                            map.compute(key, (k, old) -> old == null ? value : old.length() > 2 ? null : old + "x"));
+                    break;
+                case 4:
+                    assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                case 5:
+                    assertEquals(expected.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value));
+                    break;
+                default:
+                    int hi = key + random.nextInt(40);
+                    boolean loInclusive = random.nextBoolean();
+                    boolean hiInclusive = random.nextBoolean();
+                    List<String> entries = new ArrayList<>();
+                    for (AvlTreeMap.Node<Integer, String> node : map.entries(key, loInclusive, hi, hiInclusive)) {
+                        entries.add(node.getValue() + "=" + node.getPayload());
+                    }
+                    List<String> visited = new ArrayList<>();
+                    map.forEachEntryInRange(key, loInclusive, hi, hiInclusive, (k, v) -> visited.add(k + "=" + v));
+                    List<String> range = new ArrayList<>();
+                    expected.subMap(key, loInclusive, hi, hiInclusive).forEach((k, v) -> range.add(k + "=" + v));
+                    assertEquals(range, entries);
+                    assertEquals(range, visited);
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected.toString(), map.toString());
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    void runningHashFollowsThePayloads() {
+        Random random = new Random(14);
+        AvlTreeMap<Integer, String> map = new AvlTreeMap<>(Integer::compare);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(300);
+            String value = "v" + random.nextInt(50);
+            switch (random.nextInt(8)) {
+                case 0:
+                    map.put(key, value);
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    map.putIfAbsent(key, value);
+                    expected.putIfAbsent(key, value);
+                    break;
+                case 2:
+                    map.compute(key, (k, old) -> old == null ? value : old.length() > 2 ? null : old + "x");
+                    expected.compute(key, (k, old) -> old == null ? value : old.length() > 2 ? null : old + "x");
+                    break;
+                case 3:
+                    map.computeIfAbsent(key, k -> value);
+                    expected.computeIfAbsent(key, k -> value);
+                    break;
+                case 4:
+                    // straight through the node
+                    AvlTreeMap.Node<Integer, String> node = map.find(key);
+                    if (node != null) {
+                        node.setPayload(value);
+                        expected.put(key, value);
+                    }
+                    break;
+                case 5:
+                    map.getAndRemove(key);
+                    expected.remove(key);
+                    break;
+                case 6:
+                    if (i % 200 == 0) {
+                        map.removeByValueIf(k -> k % 7 == key % 7);
+                        expected.keySet().removeIf(k -> k % 7 == key % 7);
+                    }
+                    break;
+                default:
+                    if (i % 300 == 0) {
+                        map.removeRange(key, key + 30);
+                        expected.subMap(key, true, key + 30, true).clear();
+                    }
+                    break;
+            }
+            assertEquals(expected.hashCode(), map.hashCode());
+        }
+        // a payload written to a removed node does not count
+        AvlTreeMap.Node<Integer, String> node = map.first();
+        map.delete(node);
+        expected.remove(expected.firstKey());
+        node.setPayload("gone");
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.toString(), map.toString());
+    }
+
+    @Test
+    void childLinksCarryThePayloads() {
+        AvlTreeMap<Integer, String> map = new AvlTreeMap<>(Integer::compare);
+        for (int key = 0; key < 100; key++) {
+            map.put(key, "v" + key);
+        }
+        for (List<Tree.Node<Integer>> level : Trees.levels(map.root())) {
+            for (Tree.Node<Integer> treeNode : level) {
+                AvlTreeMap.Node<Integer, String> node = map.node(treeNode);
+                assertEquals("v" + node.getValue(), node.getPayload());
+                if (node.getLeft() != null) {
+                    assertEquals("v" + node.getLeft().getValue(), node.getLeft().getPayload());
+                }
+                if (node.getRight() != null) {
+                    assertEquals("v" + node.getRight().getValue(), node.getRight().getPayload());
+                }
+            }
+        }
+    }
+}
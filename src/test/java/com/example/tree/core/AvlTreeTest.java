@@ -0,0 +1,452 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the bulk operations split, join and relink whole subtrees, after each one the tree must still be
+// a balanced search tree with the right sizes, parents and hash
+class AvlTreeTest {
+
+    // the last ones are above the threshold of the parallel operations
+    private static final int[] SIZES = {0, 1, 2, 10, 100, 1000, 20000};
+
+    @Test
+    void prevWalksBackThroughEveryNode() {
+        for (int size = 1; size <= 300; size++) {
+            AvlTree<Integer> tree = filled(range(0, size));
+            List<Integer> values = new ArrayList<>();
+            // bounded, a prev that climbs wrong can cycle
+            for (Tree.Node<Integer> node = tree.last(); node != null && values.size() <= size; node = tree.prev(node)) {
+                values.add(node.getValue());
+            }
+            List<Integer> expected = new ArrayList<>(range(0, size).descendingSet());
+            assertEquals(expected, values);
+        }
+    }
+
+    @Test
+    void deletingLeavesKeepsTheTreeBalanced() {
+        Random random = new Random(1);
+        List<Integer> shuffled = new ArrayList<>(range(0, 1000));
+        Collections.shuffle(shuffled, random);
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (Integer value : shuffled) {
+            tree.add(value);
+            expected.add(value);
+        }
+        while (!expected.isEmpty()) {
+            List<Tree.Node<Integer>> leaves = new ArrayList<>();
+            tree.forEach(node -> {
+                if (node.getLeft() == null && node.getRight() == null) {
+                    leaves.add(node);
+                }
+            });
+            Tree.Node<Integer> leaf = leaves.get(random.nextInt(leaves.size()));
+            expected.remove(leaf.getValue());
+            tree.delete(leaf);
+            assertBalanced(tree.root(), null);
+            assertEquals(expected.size(), tree.size());
+        }
+        assertContents(expected, tree);
+    }
+
+    @Test
+    void cursorMatchesTreeSet() {
+        Random random = new Random(15);
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Tree.Cursor<Integer> cursor = tree.cursor();
+        int value = 0;
+        for (int i = 0; i < 50000; i++) {
+            // mostly short steps from the last position, sometimes a jump
+            value = random.nextInt(10) == 0 ? random.nextInt(5000) : Math.floorMod(value + random.nextInt(21) - 10, 5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    boolean found = cursor.seek(value);
+                    assertEquals(expected.contains(value), found);
+                    assertAtOrNextTo(expected, value, cursor);
+                    break;
+                case 1:
+                    assertEquals(expected.add(value), cursor.insertHere(value));
+                    assertEquals(value, cursor.node().getValue());
+                    break;
+                default:
+                    if (cursor.node() != null && cursor.node().getValue() != null) {
+                        Integer current = cursor.node().getValue();
+                        Integer next = expected.higher(current) != null ? expected.higher(current) : expected.lower(current);
+                        expected.remove(current);
+                        cursor.removeHere();
+                        assertEquals(next, cursor.node() == null ? null : cursor.node().getValue());
+                    }
+                    break;
+            }
+            if (i % 5000 == 0) {
+                assertContents(expected, tree);
+            }
+        }
+        assertContents(expected, tree);
+    }
+
+    @Test
+    void cursorStartsOverAfterABulkOperation() {
+        AvlTree<Integer> middle = filled(range(300, 600));
+        for (int operation = 0; operation < 6; operation++) {
+            // the cursor is left on a node that the operation drops
+            for (int from = 0; from < 1000; from += 13) {
+                AvlTree<Integer> tree = filled(range(0, 1000));
+                TreeSet<Integer> expected = range(0, 1000);
+                Tree.Cursor<Integer> cursor = tree.cursor();
+                assertTrue(cursor.seek(from));
+                switch (operation) {
+                    case 0:
+                        tree.removeRange(350, 500);
+                        expected.subSet(350, true, 500, true).clear();
+                        break;
+                    case 1:
+                        tree.intersection(middle);
+                        expected.retainAll(range(300, 600));
+                        break;
+                    case 2:
+                        tree.parallelIntersection(middle);
+                        expected.retainAll(range(300, 600));
+                        break;
+                    case 3:
+                        tree.difference(middle);
+                        expected.removeAll(range(300, 600));
+                        break;
+                    case 4:
+                        tree.removeByValueIf(value -> value % 2 == 0);
+                        expected.removeIf(value -> value % 2 == 0);
+                        break;
+                    default:
+                        tree.clear();
+                        expected.clear();
+                        break;
+                }
+                for (int value : new int[] {from, 700, 20, 999, 349, 501}) {
+                    assertEquals(expected.contains(value), cursor.seek(value));
+                    assertAtOrNextTo(expected, value, cursor);
+                }
+                assertEquals(expected.add(450), cursor.insertHere(450));
+                assertEquals(450, cursor.node().getValue());
+                assertTrue(tree.contains(450));
+                Integer next = expected.higher(450) != null ? expected.higher(450) : expected.lower(450);
+                expected.remove(450);
+                cursor.removeHere();
+                assertEquals(next, cursor.node() == null ? null : cursor.node().getValue());
+                assertContents(expected, tree);
+            }
+        }
+    }
+
+    // after a seek the cursor is on the value, or on the value just below or above it if the value is missing
+    private static void assertAtOrNextTo(TreeSet<Integer> expected, int value, Tree.Cursor<Integer> cursor) {
+        if (expected.isEmpty()) {
+            return;
+        }
+        Integer at = cursor.node().getValue();
+        if (expected.contains(value)) {
+            assertEquals(value, at);
+        } else {
+            assertTrue(at.equals(expected.lower(value)) || at.equals(expected.higher(value)), at + " is not next to " + value);
+        }
+    }
+
+    @Test
+    void setOperationsMatchTreeSet() {
+        Random random = new Random(4);
+        for (int size : SIZES) {
+            for (int otherSize : SIZES) {
+                int bound = 2 * Math.max(1, Math.max(size, otherSize));
+                TreeSet<Integer> values = randomSet(random, size, bound);
+                TreeSet<Integer> otherValues = randomSet(random, otherSize, bound);
+                check(values, otherValues, AvlTree::union, NavigableSet::addAll);
+                check(values, otherValues, AvlTree::intersection, NavigableSet::retainAll);
+                check(values, otherValues, AvlTree::difference, NavigableSet::removeAll);
+                check(values, otherValues, AvlTree::parallelUnion, NavigableSet::addAll);
+                check(values, otherValues, AvlTree::parallelIntersection, NavigableSet::retainAll);
+                check(values, otherValues, AvlTree::parallelDifference, NavigableSet::removeAll);
+            }
+        }
+    }
+
+    @Test
+    void setOperationsOfDisjointAndNestedTrees() {
+        TreeSet<Integer> low = range(0, 10000);
+        TreeSet<Integer> high = range(10000, 20000);
+        TreeSet<Integer> all = range(0, 20000);
+        TreeSet<Integer> middle = range(5000, 15000);
+        for (TreeSet<Integer> values : List.of(low, high, all, middle)) {
+            for (TreeSet<Integer> otherValues : List.of(low, high, all, middle)) {
+                check(values, otherValues, AvlTree::union, NavigableSet::addAll);
+                check(values, otherValues, AvlTree::intersection, NavigableSet::retainAll);
+                check(values, otherValues, AvlTree::difference, NavigableSet::removeAll);
+                check(values, otherValues, AvlTree::parallelUnion, NavigableSet::addAll);
+                check(values, otherValues, AvlTree::parallelIntersection, NavigableSet::retainAll);
+                check(values, otherValues, AvlTree::parallelDifference, NavigableSet::removeAll);
+            }
+        }
+    }
+
+    @Test
+    void setOperationsWithItself() {
+        AvlTree<Integer> tree = filled(range(0, 100));
+        assertFalse(tree.union(tree));
+        assertFalse(tree.intersection(tree));
+        assertFalse(tree.parallelUnion(tree));
+        assertFalse(tree.parallelIntersection(tree));
+        assertContents(range(0, 100), tree);
+        assertTrue(tree.difference(tree));
+        assertContents(new TreeSet<>(), tree);
+        assertFalse(tree.parallelDifference(tree));
+    }
+
+    @Test
+    void removeRangeMatchesTreeSet() {
+        Random random = new Random(40);
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 30; i++) {
+                int value = random.nextInt(5000);
+                assertEquals(expected.add(value), tree.add(value));
+            }
+            int lo = random.nextInt(5000);
+            int hi = lo + random.nextInt(round % 2 == 0 ? 20 : 2000) - 5;
+            boolean loInclusive = random.nextBoolean();
+            boolean hiInclusive = random.nextBoolean();
+            NavigableSet<Integer> removed = lo < hi || lo == hi && loInclusive && hiInclusive
+                    ? expected.subSet(lo, loInclusive, hi, hiInclusive)
+                    : new TreeSet<>();
+            assertEquals(!removed.isEmpty(), tree.removeRange(lo, loInclusive, hi, hiInclusive));
+            removed.clear();
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeRangeAtTheEnds() {
+        AvlTree<Integer> tree = filled(range(0, 1000));
+        TreeSet<Integer> expected = range(0, 1000);
+        assertTrue(tree.removeRange(-10, true, 0, true));
+        expected.remove(0);
+        assertContents(expected, tree);
+        assertTrue(tree.removeRange(990, false, 2000, false));
+        expected.subSet(990, false, 2000, false).clear();
+        assertContents(expected, tree);
+        assertFalse(tree.removeRange(500, false, 501, false));
+        assertFalse(tree.removeRange(600, true, 500, true));
+        assertTrue(tree.removeRange(Integer.MIN_VALUE, true, Integer.MAX_VALUE, true));
+        assertContents(new TreeSet<>(), tree);
+    }
+
+    @Test
+    void nodesDroppedByBulkOperationsAreStale() {
+        AvlTree<Integer> middle = filled(range(5000, 15000));
+        for (int operation = 0; operation < 6; operation++) {
+            AvlTree<Integer> tree = filled(range(0, 20000));
+            TreeSet<Integer> expected = range(0, 20000);
+            List<Tree.Node<Integer>> nodes = new ArrayList<>();
+            tree.forEach(nodes::add);
+            switch (operation) {
+                case 0:
+                    tree.removeRange(5000, true, 15000, false);
+                    expected.subSet(5000, true, 15000, false).clear();
+                    break;
+                case 1:
+                    tree.intersection(middle);
+                    expected.retainAll(range(5000, 15000));
+                    break;
+                case 2:
+                    tree.parallelIntersection(middle);
+                    expected.retainAll(range(5000, 15000));
+                    break;
+                case 3:
+                    tree.difference(middle);
+                    expected.removeAll(range(5000, 15000));
+                    break;
+                case 4:
+                    tree.parallelDifference(middle);
+                    expected.removeAll(range(5000, 15000));
+                    break;
+                default:
+                    tree.parallelRemoveByValueIf(value -> value % 3 != 0);
+                    expected.removeIf(value -> value % 3 != 0);
+                    break;
+            }
+            for (int value = 0; value < 20000; value++) {
+                Tree.Node<Integer> node = nodes.get(value);
+                if (expected.contains(value)) {
+                    assertSame(node, tree.find(value));
+                } else {
+                    assertNull(node.getValue());
+                    assertNull(node.getParent());
+                    assertNull(node.getLeft());
+                    assertNull(node.getRight());
+                    // deleting a stale handle changes nothing
+                    tree.delete(node);
+                }
+            }
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeIfOnBothSidesOfTheRebuildThreshold() {
+        // with 10000 nodes a filter removing fewer than 715 of them deletes one by one, more rebuild the tree.
+        // 7919 is prime to 10000, so exactly cut values are removed, scattered over the tree
+        for (int cut : new int[] {1, 100, 714, 715, 5000, 9999, 10000}) {
+            AvlTree<Integer> tree = filled(range(0, 10000));
+            TreeSet<Integer> expected = range(0, 10000);
+            List<Tree.Node<Integer>> nodes = new ArrayList<>();
+            tree.forEach(nodes::add);
+            List<Integer> tested = new ArrayList<>();
+            assertTrue(tree.removeIf(node -> {
+                tested.add(node.getValue());
+                return node.getValue() * 7919 % 10000 < cut;
+            }));
+            assertEquals(new ArrayList<>(range(0, 10000)), tested);
+            expected.removeIf(value -> value * 7919 % 10000 < cut);
+            assertEquals(10000 - cut, expected.size());
+            assertContents(expected, tree);
+            // the nodes of the survivors are kept, the removed ones are stale
+            for (int value = 0; value < 10000; value++) {
+                Tree.Node<Integer> node = nodes.get(value);
+                if (expected.contains(value)) {
+                    assertSame(node, tree.find(value));
+                    assertEquals(value, node.getValue());
+                } else {
+                    assertNull(node.getValue());
+                    assertNull(node.getParent());
+                }
+            }
+            // and the tree takes changes afterwards
+            for (int value = 0; value < 10000; value += 3) {
+                assertEquals(expected.remove(value), tree.remove(value));
+                assertEquals(expected.add(value + 1), tree.add(value + 1));
+            }
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeIfMatchesTreeSet() {
+        Random random = new Random(16);
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 500; i++) {
+                int value = random.nextInt(20000);
+                assertEquals(expected.add(value), tree.add(value));
+            }
+            // from a few nodes to most of them
+            int modulus = 1 + random.nextInt(round % 2 == 0 ? 3 : 200);
+            int residue = random.nextInt(modulus);
+            boolean removed = expected.removeIf(value -> value % modulus == residue);
+            switch (round % 3) {
+                case 0:
+                    assertEquals(removed, tree.removeByValueIf(value -> value % modulus == residue));
+                    break;
+                case 1:
+                    assertEquals(removed, tree.removeIf(node -> node.getValue() % modulus == residue));
+                    break;
+                default:
+                    assertEquals(removed, tree.parallelRemoveByValueIf(value -> value % modulus == residue));
+                    break;
+            }
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeIfOfNothingAndOfAnEmptyTree() {
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        assertFalse(tree.removeIf(node -> true));
+        tree.add(1);
+        assertFalse(tree.removeByValueIf(value -> value > 1));
+        assertContents(new TreeSet<>(List.of(1)), tree);
+        assertTrue(tree.removeByValueIf(value -> true));
+        assertContents(new TreeSet<>(), tree);
+    }
+
+    private static void check(TreeSet<Integer> values, TreeSet<Integer> otherValues,
+                              BiPredicate<AvlTree<Integer>, AvlTree<Integer>> operation,
+                              BiPredicate<NavigableSet<Integer>, NavigableSet<Integer>> expectedOperation) {
+        AvlTree<Integer> tree = filled(values);
+        AvlTree<Integer> other = filled(otherValues);
+        TreeSet<Integer> expected = new TreeSet<>(values);
+        assertEquals(expectedOperation.test(expected, otherValues), operation.test(tree, other));
+        assertContents(expected, tree);
+        assertContents(otherValues, other);
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size, int bound) {
+        TreeSet<Integer> values = new TreeSet<>();
+        while (values.size() < size) {
+            values.add(random.nextInt(bound));
+        }
+        return values;
+    }
+
+    private static TreeSet<Integer> range(int lo, int hi) {
+        TreeSet<Integer> values = new TreeSet<>();
+        for (int value = lo; value < hi; value++) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    private static AvlTree<Integer> filled(TreeSet<Integer> values) {
+        AvlTree<Integer> tree = new AvlTree<>(Integer::compare);
+        for (Integer value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static void assertContents(TreeSet<Integer> expected, AvlTree<Integer> tree) {
+        List<Integer> values = new ArrayList<>();
+        tree.forEachValue(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected.hashCode(), tree.hashCode());
+        assertBalanced(tree.root(), null);
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int index = 0; index < sorted.size(); index += 1 + index / 8) {
+            assertEquals(sorted.get(index), tree.select(index).getValue());
+            assertEquals(index, tree.rank(sorted.get(index)));
+        }
+    }
+
+    // returns the height of the subtree
+    private static int assertBalanced(Tree.Node<Integer> node, Tree.Node<Integer> parent) {
+        if (node == null) {
+            return 0;
+        }
+        assertSame(parent, node.getParent());
+        if (node.getLeft() != null) {
+            assertTrue(node.getLeft().getValue() < node.getValue());
+        }
+        if (node.getRight() != null) {
+            assertTrue(node.getRight().getValue() > node.getValue());
+        }
+        int left = assertBalanced(node.getLeft(), node);
+        int right = assertBalanced(node.getRight(), node);
+        assertTrue(Math.abs(left - right) <= 1);
+        return 1 + Math.max(left, right);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// node handles of a BTree do not survive a change, these paths must not hold one across a removal
+class BTreeTest {
+
+    private static final int[] CAPACITIES = {3, 4, 64};
+
+    @Test
+    void removeRangeRemovesOnlyTheRange() {
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = filled(capacity, 1000);
+            assertTrue(tree.removeRange(100, true, 200, false));
+            NavigableSet<Integer> expected = range(1000);
+            expected.subSet(100, true, 200, false).clear();
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeRangeOfFewKeysAndOfMostKeys() {
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = filled(capacity, 1000);
+            NavigableSet<Integer> expected = range(1000);
+            // fewer keys than the rebuild threshold
+            assertTrue(tree.removeRange(500, false, 510, true));
+            expected.subSet(500, false, 510, true).clear();
+            assertContents(expected, tree);
+            assertTrue(tree.removeRange(-5, 900));
+            expected.subSet(-5, true, 900, true).clear();
+            assertContents(expected, tree);
+            assertFalse(tree.removeRange(0, 800));
+            assertFalse(tree.removeRange(950, false, 950, true));
+            assertTrue(tree.removeRange(0, 2000));
+            assertTrue(tree.isEmpty());
+        }
+    }
+
+    @Test
+    void removeRangeMatchesTreeSet() {
+        Random random = new Random(18);
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = new BTree<>(Integer::compare, capacity);
+            NavigableSet<Integer> expected = new TreeSet<>();
+            for (int round = 0; round < 300; round++) {
+                for (int i = 0; i < 50; i++) {
+                    int value = random.nextInt(2000);
+                    assertEquals(expected.add(value), tree.add(value));
+                }
+                int lo = random.nextInt(2000);
+                int hi = lo + random.nextInt(round % 2 == 0 ? 20 : 1000);
+                boolean loInclusive = random.nextBoolean();
+                boolean hiInclusive = random.nextBoolean();
+                NavigableSet<Integer> removed = lo < hi || loInclusive && hiInclusive
+                        ? expected.subSet(lo, loInclusive, hi, hiInclusive)
+                        : new TreeSet<>();
+                assertEquals(!removed.isEmpty(), tree.removeRange(lo, loInclusive, hi, hiInclusive));
+                removed.clear();
+                assertContents(expected, tree);
+            }
+        }
+    }
+
+    @Test
+    void cursorRemoveHereMovesToTheSuccessor() {
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = filled(capacity, 1000);
+            Tree.Cursor<Integer> cursor = tree.cursor();
+            assertTrue(cursor.seek(100));
+            for (int i = 0; i < 50; i++) {
+                assertEquals(100 + i, cursor.node().getValue());
+                cursor.removeHere();
+            }
+            assertEquals(150, cursor.node().getValue());
+            NavigableSet<Integer> expected = range(1000);
+            expected.subSet(100, 150).clear();
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void cursorRemoveHereAtTheEndMovesToThePredecessor() {
+        BTree<Integer> tree = filled(4, 10);
+        Tree.Cursor<Integer> cursor = tree.cursor();
+        assertTrue(cursor.seek(9));
+        cursor.removeHere();
+        assertEquals(8, cursor.node().getValue());
+        for (int i = 8; i >= 0; i--) {
+            cursor.removeHere();
+        }
+        assertNull(cursor.node());
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void subTreeRemoveIfSeesEveryNodeOfTheRange() {
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = filled(capacity, 1000);
+            List<Integer> seen = new ArrayList<>();
+            assertTrue(tree.subTree(100, true, 300, true).removeIf(node -> {
+                seen.add(node.getValue());
+                return node.getValue() % 3 == 0;
+            }));
+            assertEquals(201, seen.size());
+            NavigableSet<Integer> expected = range(1000);
+            expected.removeIf(value -> value >= 100 && value <= 300 && value % 3 == 0);
+            assertContents(expected, tree);
+
+            assertTrue(tree.headTree(50, false).removeByValueIf(value -> value % 2 == 0));
+            expected.removeIf(value -> value < 50 && value % 2 == 0);
+            assertContents(expected, tree);
+
+            tree.tailTree(900, true).clear();
+            expected.tailSet(900, true).clear();
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void removeIfRebuildsTheSurvivors() {
+        for (int capacity : CAPACITIES) {
+            BTree<Integer> tree = filled(capacity, 1000);
+            assertTrue(tree.removeIf(node -> node.getValue() % 7 != 0));
+            NavigableSet<Integer> expected = range(1000);
+            expected.removeIf(value -> value % 7 != 0);
+            assertContents(expected, tree);
+            assertFalse(tree.removeByValueIf(value -> value % 7 != 0));
+            for (int value = 0; value < 1000; value++) {
+                assertEquals(expected.add(value), tree.add(value));
+            }
+            assertContents(expected, tree);
+        }
+    }
+
+    private static BTree<Integer> filled(int capacity, int size) {
+        BTree<Integer> tree = new BTree<>(Integer::compare, capacity);
+        for (int value = 0; value < size; value++) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static NavigableSet<Integer> range(int size) {
+        NavigableSet<Integer> set = new TreeSet<>();
+        for (int value = 0; value < size; value++) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    // same values in the same order, and the rank, select and navigation agree with them
+    private static void assertContents(NavigableSet<Integer> expected, BTree<Integer> tree) {
+        assertEquals(expected.size(), tree.size());
+        List<Integer> values = new ArrayList<>();
+        tree.forEachValue(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        int index = 0;
+        for (Tree.Node<Integer> node = tree.first(); node != null; node = tree.next(node)) {
+            assertEquals(index, tree.rank(node.getValue()));
+            assertEquals(node.getValue(), tree.select(index).getValue());
+            index++;
+        }
+        assertEquals(expected.size(), index);
+        for (int value : expected) {
+            assertTrue(tree.contains(value));
+        }
+    }
+}
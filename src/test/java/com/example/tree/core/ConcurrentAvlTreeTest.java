@@ -0,0 +1,250 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Writers own the odd keys of disjoint stripes, so every answer they get has to match a sequential model.
+// Readers meanwhile check what any linearizable history shows: the even keys between them are never
+// changed and always seen the same, and a range that only grows in order is read as a prefix that never shrinks.
+class ConcurrentAvlTreeTest {
+
+    private static final int WRITERS = 3;
+    private static final int READERS = 3;
+    private static final int STRIPE = 1000;
+    private static final int OPERATIONS = 400_000;
+
+    // keys from GROWING on are only ever added, in ascending order
+    private static final int GROWING = 20_000;
+    private static final int GROWING_COUNT = 20_000;
+
+    @Test
+    void stressIsLinearizable() throws InterruptedException {
+        ConcurrentAvlTree<Integer> tree = new ConcurrentAvlTree<>(Integer::compare);
+        // the multiples of 4 stay, the other even keys of the stripes are never added
+        for (int value = 0; value < WRITERS * STRIPE; value += 4) {
+            tree.add(value);
+        }
+        List<TreeSet<Integer>> stripes = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            stripes.add(expected);
+            int lo = t * STRIPE;
+            int seed = t;
+            writers.add(thread(failure, start, () -> write(tree, expected, lo, new Random(seed))));
+        }
+        writers.add(thread(failure, start, () -> {
+            for (int i = 0; i < GROWING_COUNT; i++) {
+                assertTrue(tree.add(GROWING + i));
+            }
+        }));
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < READERS; t++) {
+            int seed = 100 + t;
+            readers.add(thread(failure, start, () -> read(tree, done, new Random(seed))));
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (TreeSet<Integer> stripe : stripes) {
+            expected.addAll(stripe);
+        }
+        for (int value = 0; value < WRITERS * STRIPE; value += 4) {
+            expected.add(value);
+        }
+        for (int i = 0; i < GROWING_COUNT; i++) {
+            expected.add(GROWING + i);
+        }
+        List<Integer> values = new ArrayList<>();
+        tree.forEachValue(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        assertEquals(expected.size(), tree.size());
+    }
+
+    @Test
+    void equalsBothWaysWhileWritersWait() throws InterruptedException {
+        ConcurrentAvlTree<Integer> a = new ConcurrentAvlTree<>(Integer::compare);
+        ConcurrentAvlTree<Integer> b = new ConcurrentAvlTree<>(Integer::compare);
+        for (int value = 0; value < 2000; value++) {
+            a.add(value);
+            b.add(value);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = List.of(
+                thread(failure, start, () -> compare(a, b)),
+                thread(failure, start, () -> compare(b, a)),
+                thread(failure, start, () -> rewrite(a)),
+                thread(failure, start, () -> rewrite(b)));
+        start.countDown();
+        for (Thread thread : threads) {
+            // a cycle of threads each holding one tree's read lock while a writer waits on the other would hang here
+            thread.join(60_000);
+            assertFalse(thread.isAlive());
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    void hashCodeFollowsRemoveRange() {
+        ConcurrentAvlTree<Integer> tree = new ConcurrentAvlTree<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(9);
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 20; i++) {
+                int value = random.nextInt(2000);
+                assertEquals(expected.add(value), tree.add(value));
+            }
+            int lo = random.nextInt(2000);
+            tree.removeRange(lo, true, lo + 50, false);
+            expected.subSet(lo, true, lo + 50, false).clear();
+            assertEquals(expected.hashCode(), tree.hashCode());
+        }
+    }
+
+    private static void compare(ConcurrentAvlTree<Integer> tree, ConcurrentAvlTree<Integer> other) {
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(tree.equals(other));
+            tree.hashCode();
+        }
+    }
+
+    // takes the write lock without changing the tree, so the trees stay equal and every equals walks them whole
+    private static void rewrite(ConcurrentAvlTree<Integer> tree) {
+        for (int i = 0; i < 20_000; i++) {
+            assertFalse(tree.add(i % 2000));
+        }
+    }
+
+    private static void write(ConcurrentAvlTree<Integer> tree, TreeSet<Integer> expected, int lo, Random random) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            int value = lo + 2 * random.nextInt(STRIPE / 2) + 1;
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2:
+                    assertEquals(expected.add(value), tree.add(value));
+                    break;
+                case 3:
+                case 4:
+                case 5:
+                    assertEquals(expected.remove(value), tree.remove(value));
+                    break;
+                case 6:
+                    assertEquals(expected.contains(value), tree.contains(value));
+                    // the floor is the last odd key of this stripe or the multiple of 4 below, whichever is larger
+                    Integer odd = expected.floor(value);
+                    int floor = odd == null ? value & ~3 : Math.max(odd, value & ~3);
+                    assertEquals(floor, valueOf(tree.floor(value)));
+                    break;
+                default:
+                    if (i % 5000 == 0) {
+                        int residue = random.nextInt(7);
+                        tree.removeByValueIf(v -> v >= lo && v < lo + STRIPE && v % 2 == 1 && v % 7 == residue);
+                        expected.removeIf(v -> v % 7 == residue);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static void read(ConcurrentAvlTree<Integer> tree, AtomicBoolean done, Random random) {
+        int grown = 0;
+        while (!done.get()) {
+            int absent = 4 * random.nextInt(WRITERS * STRIPE / 4 - 1) + 2;
+            assertFalse(tree.contains(absent));
+            assertTrue(tree.contains(absent - 2));
+            assertNotNull(tree.find(absent + 2));
+            assertBetween(absent - 2, absent - 1, tree.floor(absent));
+            assertBetween(absent - 2, absent - 1, tree.lower(absent));
+            assertBetween(absent + 1, absent + 2, tree.ceiling(absent));
+            assertBetween(absent + 1, absent + 2, tree.higher(absent));
+
+            // only the tail of the growing range, where its writer is rotating
+            int from = GROWING + Math.max(0, grown - 64);
+            List<Integer> tail = new ArrayList<>();
+            tree.forEachValueInRange(from, true, Integer.MAX_VALUE, true, tail::add);
+            assertTrue(from + tail.size() >= GROWING + grown);
+            for (int i = 0; i < tail.size(); i++) {
+                assertEquals(from + i, tail.get(i));
+            }
+            grown = from + tail.size() - GROWING;
+            if (grown > 0) {
+                assertTrue(tree.contains(GROWING + grown - 1));
+                assertTrue(tree.last().getValue() >= GROWING + grown - 1);
+            }
+            assertNull(tree.find(GROWING + GROWING_COUNT));
+
+            if (random.nextInt(16) == 0) {
+                int lo = STRIPE * random.nextInt(WRITERS);
+                List<Integer> stripe = new ArrayList<>();
+                tree.forEachValueInRange(lo, true, lo + STRIPE, false, stripe::add);
+                int previous = lo - 1;
+                int stable = 0;
+                for (int value : stripe) {
+                    assertTrue(value > previous);
+                    assertTrue(value % 4 == 0 || value % 2 == 1);
+                    if (value % 4 == 0) {
+                        assertEquals(lo + 4 * stable++, value);
+                    }
+                    previous = value;
+                }
+                assertEquals(STRIPE / 4, stable);
+            }
+        }
+    }
+
+    // the writer of an odd key may delete its node before the value is read here, which leaves the value null
+    private static void assertBetween(int lo, int hi, Tree.Node<Integer> node) {
+        assertNotNull(node);
+        Integer value = node.getValue();
+        assertTrue(value == null || value >= lo && value <= hi, value + " is not in [" + lo + ", " + hi + "]");
+    }
+
+    private static Thread thread(AtomicReference<Throwable> failure, CountDownLatch start, Runnable body) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static Integer valueOf(Tree.Node<Integer> node) {
+        return node == null ? null : node.getValue();
+    }
+}
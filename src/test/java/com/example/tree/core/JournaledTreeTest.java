@@ -0,0 +1,216 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// every state reached through the journal must come back the same after reopening
+class JournaledTreeTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAfterClose() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>();
+        try (JournaledTree<Integer> tree = open()) {
+            for (int value = 0; value < 1000; value++) {
+                tree.add(value);
+                expected.add(value);
+            }
+            tree.removeByValueIf(value -> value % 2 == 0);
+            expected.removeIf(value -> value % 2 == 0);
+            tree.removeIf(node -> node.getValue() % 3 == 0);
+            expected.removeIf(value -> value % 3 == 0);
+            tree.remove(1);
+            expected.remove(1);
+            tree.delete(tree.find(5));
+            expected.remove(5);
+            assertContents(expected, tree);
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void replaysWithoutClose() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(21);
+        // the directory is reopened while the first tree is still open, as after a crash every returned change is forced
+        JournaledTree<Integer> crashed = open();
+        for (int i = 0; i < 2000; i++) {
+            int value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), crashed.remove(value));
+            } else {
+                assertEquals(expected.add(value), crashed.add(value));
+            }
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+        }
+        crashed.close();
+    }
+
+    @Test
+    void replaysClearAndLaterChanges() throws IOException {
+        try (JournaledTree<Integer> tree = open()) {
+            tree.add(1);
+            tree.add(2);
+            tree.clear();
+            tree.add(3);
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(new TreeSet<>(List.of(3)), tree);
+        }
+    }
+
+    @Test
+    void deletingAStaleNodeIsNotJournaled() throws IOException {
+        try (JournaledTree<Integer> tree = open()) {
+            tree.add(0);
+            tree.add(5);
+            Tree.Node<Integer> node = tree.find(5);
+            tree.delete(node);
+            tree.delete(node);
+            assertTrue(tree.contains(0));
+            assertEquals(1, tree.size());
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertTrue(tree.contains(0));
+            assertFalse(tree.contains(5));
+            assertEquals(1, tree.size());
+        }
+    }
+
+    @Test
+    void cutsOffATornTail() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>();
+        try (JournaledTree<Integer> tree = open()) {
+            for (int value = 0; value < 100; value++) {
+                tree.add(value);
+                expected.add(value);
+            }
+        }
+        Path journal = directory.resolve("journal");
+        long length = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            // a whole record with a wrong checksum followed by half a record
+            ByteBuffer torn = ByteBuffer.allocate(9 + 4);
+            torn.put(0, (byte) 1).putInt(1, 1000).putInt(5, 12345).put(9, (byte) 1);
+            channel.write(torn, length);
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+            assertEquals(length, Files.size(journal));
+            tree.add(100);
+            expected.add(100);
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void replaysOnTopOfCheckpoints() throws IOException {
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+        // a checkpoint every few dozen records
+        try (JournaledTree<Integer> tree = JournaledTree.open(directory, KeyCodec.INT, Integer::compare, 512)) {
+            for (int i = 0; i < 3000; i++) {
+                int value = random.nextInt(1000);
+                if (random.nextBoolean()) {
+                    assertEquals(expected.add(value), tree.add(value));
+                } else {
+                    assertEquals(expected.remove(value), tree.remove(value));
+                }
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("checkpoint")));
+        assertTrue(Files.size(directory.resolve("journal")) <= 512 + 9);
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+            tree.checkpoint();
+            assertEquals(16, Files.size(directory.resolve("journal")));
+        }
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+        }
+    }
+
+    @Test
+    void checkpointsWhileWritersGoOn() throws IOException, InterruptedException {
+        JournaledTree<Integer> crashed = open();
+        List<TreeSet<Integer>> stripes = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            stripes.add(expected);
+            int lo = t * 2000;
+            // every key is added once and every third removed once, so a lost record is never covered by a later one
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int value = lo; value < lo + 2000; value++) {
+                        assertTrue(crashed.add(value));
+                        expected.add(value);
+                        if (value % 3 == 0 && value >= lo + 3 * 50) {
+                            assertTrue(crashed.remove(value - 3 * 50));
+                            expected.remove(value - 3 * 50);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        // no checkpoint after the first writer is done, a later one would save what an earlier one lost again
+        while (writers.get(0).isAlive()) {
+            crashed.checkpoint();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (TreeSet<Integer> stripe : stripes) {
+            expected.addAll(stripe);
+        }
+        // every returned change is in the checkpoint or in the journal after it
+        try (JournaledTree<Integer> tree = open()) {
+            assertContents(expected, tree);
+        }
+        crashed.close();
+    }
+
+    private JournaledTree<Integer> open() throws IOException {
+        return JournaledTree.open(directory, KeyCodec.INT, Integer::compare);
+    }
+
+    private static void assertContents(TreeSet<Integer> expected, Tree<Integer> tree) {
+        List<Integer> values = new ArrayList<>();
+        tree.forEachValue(values::add);
+        assertEquals(new ArrayList<>(expected), values);
+        assertEquals(expected.size(), tree.size());
+    }
+}
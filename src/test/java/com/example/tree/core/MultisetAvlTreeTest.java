@@ -0,0 +1,88 @@
+package com.example.tree.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class MultisetAvlTreeTest {
+
+    @Test
+    void runningHashFollowsTheCounts() {
+        Random random = new Random(24);
+        MultisetAvlTree<Integer> tree = new MultisetAvlTree<>(Integer::compare);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(300);
+            int occurrences = 1 + random.nextInt(3);
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.getOrDefault(value, 0), tree.add(value, occurrences));
+                    expected.merge(value, occurrences, Integer::sum);
+                    break;
+                case 2:
+                    assertEquals(expected.getOrDefault(value, 0), tree.remove(value, occurrences));
+                    expected.computeIfPresent(value, (v, count) -> count > occurrences ? count - occurrences : null);
+                    break;
+                case 3:
+                    Tree.Node<Integer> node = tree.find(value);
+                    if (node != null) {
+                        tree.delete(node);
+                    }
+                    expected.remove(value);
+                    break;
+                case 4:
+                    if (i % 500 == 0) {
+                        tree.removeByValueIf(v -> v % 5 == value % 5);
+                        expected.keySet().removeIf(v -> v % 5 == value % 5);
+                    }
+                    break;
+                default:
+                    if (i % 700 == 0) {
+                        tree.removeRange(value, value + 40);
+                        expected.subMap(value, true, value + 40, true).clear();
+                    }
+                    break;
+            }
+            if (i % 100 == 0) {
+                assertEquals(hash(expected), tree.hashCode());
+            }
+        }
+        assertEquals(hash(expected), tree.hashCode());
+        assertEquals(expected.values().stream().mapToLong(Integer::longValue).sum(), tree.totalCount());
+    }
+
+    @Test
+    void equalsComparesTheCounts() {
+        MultisetAvlTree<Integer> a = new MultisetAvlTree<>(Integer::compare);
+        MultisetAvlTree<Integer> b = new MultisetAvlTree<>(Integer::compare);
+        for (int value = 0; value < 100; value++) {
+            a.add(value, 1 + value % 3);
+        }
+        for (int value = 99; value >= 0; value--) {
+            for (int i = 0; i <= value % 3; i++) {
+                b.add(value);
+            }
+        }
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.remove(50);
+        assertNotEquals(a, b);
+        b.add(50);
+        assertEquals(a, b);
+    }
+
+    private static int hash(TreeMap<Integer, Integer> counts) {
+        int hash = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            hash += Objects.hashCode(entry.getKey()) ^ entry.getValue();
+        }
+        return hash;
+    }
+}